@@ -2,21 +2,30 @@ package byog.Core;
 
 import byog.TileEngine.TERenderer;
 import byog.TileEngine.TETile;
+import byog.TileEngine.TileGrid;
 import byog.TileEngine.Tileset;
 import edu.princeton.cs.introcs.StdDraw;
 import java.util.LinkedList;
-import java.util.Random;
 
 /**
  * This class deals with the animation between worlds in the game.
  */
 public class Animation implements java.io.Serializable {
+    private static final TETile[] ANALOGTILES = new TETile[]{
+        Tileset.TOANALOG1,
+        Tileset.TOANALOG2,
+        Tileset.TOANALOG3,
+        Tileset.TOANALOG4,
+        Tileset.TOANALOG5,
+        Tileset.TOANALOG6};
+    private static final RandomUtils.DiscreteSampler ANALOGVARIANTS =
+            RandomUtils.sampler(new int[]{1, 1, 1, 1, 1, 1});
 
     private Environment environment;
     private World world;
     private TERenderer tileRender;
-    private TETile[][] currentWorld;
-    private TETile[][] otherWorld;
+    private TileGrid currentWorld;
+    private TileGrid otherWorld;
     private int[][] stepArray;
     private int maxStep;
     private boolean digital;
@@ -51,24 +60,22 @@ public class Animation implements java.io.Serializable {
                 // For each tile in the current step count, change it to a random analog
                 // transition tile.
                 for (Point tile : currentStep) {
-                    currentWorld[tile.getX()][tile.getY()] = getRandomAnalog();
+                    currentWorld.set(tile.getX(), tile.getY(), getRandomAnalog());
                 }
 
                 // Show the random analog transition tiles.
                 tileRender.renderFrame(currentWorld);
-                StdDraw.show();
                 StdDraw.pause(i * i / 3);
 
             } else {
                 // The world is currently analog. For each tile in the current step count, change
                 // it to the digital transition tile.
                 for (Point tile : currentStep) {
-                    currentWorld[tile.getX()][tile.getY()] = Tileset.TODIGITAL;
+                    currentWorld.set(tile.getX(), tile.getY(), Tileset.TODIGITAL);
                 }
 
                 // Show the digital transition tiles.
                 tileRender.renderFrame(currentWorld);
-                StdDraw.show();
                 StdDraw.pause(i * i / 3);
 
             }
@@ -76,17 +83,17 @@ public class Animation implements java.io.Serializable {
             // The transition tiles have been shown, now change the current step count tiles
             // to their appropriate other world tiles.
             for (Point tile : currentStep) {
-                currentWorld[tile.getX()][tile.getY()] = otherWorld[tile.getX()][tile.getY()];
+                currentWorld.setId(tile.getX(), tile.getY(),
+                        otherWorld.getId(tile.getX(), tile.getY()));
             }
 
             // Show the new world tiles for this step count.
             tileRender.renderFrame(currentWorld);
-            StdDraw.show();
             StdDraw.pause(i * i / 3);
         }
 
         // The transition has been made. Switch current/other and digital/analog.
-        TETile[][] temp = currentWorld;
+        TileGrid temp = currentWorld;
         currentWorld = otherWorld;
         otherWorld = temp;
         digital = !digital;
@@ -105,12 +112,10 @@ public class Animation implements java.io.Serializable {
             }
         }
 
-        LinkedList<Point> nonEmptyTiles = environment.getWorld().getWallTiles();
+        PositionSet nonEmptyTiles = environment.getWorld().getWallTiles();
 
         // Set all of the wall tiles to 0.
-        for (Point tile : nonEmptyTiles) {
-            stepArray[tile.getX()][tile.getY()] = 0;
-        }
+        nonEmptyTiles.forEach(tile -> stepArray[Point.unpackX(tile)][Point.unpackY(tile)] = 0);
 
         boolean changeMade = true;
         int minValue;
@@ -175,15 +180,6 @@ public class Animation implements java.io.Serializable {
      * @return : A random transition tile for switching to analog.
      */
     private TETile getRandomAnalog() {
-        Random random = world.getRandom();
-        TETile[] tiles = new TETile[]{
-            Tileset.TOANALOG1,
-            Tileset.TOANALOG2,
-            Tileset.TOANALOG3,
-            Tileset.TOANALOG4,
-            Tileset.TOANALOG5,
-            Tileset.TOANALOG6};
-
-        return tiles[random.nextInt(6)];
+        return ANALOGTILES[ANALOGVARIANTS.sample(world.getCosmeticRandom())];
     }
 }
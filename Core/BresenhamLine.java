@@ -5,6 +5,17 @@ import java.util.LinkedList;
 /**
  * This class implements the Bresenham's line algorithm.
  *
+ * A line is walked one tile at a time as a cursor: advance moves to the next tile of the line,
+ * whose coordinates are then read with getX and getY. The same line object can be reset to new
+ * endpoints any number of times, so lines can be walked in a hot loop without creating any
+ * objects. A line may also be walked with a visitor, which can stop the walk early, e.g., at
+ * the first tile blocking sight, or have its tiles written packed (see Point.pack) into an int
+ * array.
+ *
+ * Tiles are walked from the start of the line to its end. A line is the same set of tiles
+ * whichever of its ends it is walked from: where the ideal line passes exactly halfway between
+ * two tiles, the same one of the two is always chosen.
+ *
  * Sources:
  *   @Source : https://en.wikipedia.org/wiki/Bresenham%27s_line_algorithm
  *   @Source : https://www.cs.helsinki.fi/group/goa/mallinnus/lines/bresenh.html
@@ -18,108 +29,213 @@ public class BresenhamLine implements java.io.Serializable {
     private int startY;
     private int endX;
     private int endY;
-    private LinkedList<Point> line;
+
+    // The state of the cursor.
+    private int x;
+    private int y;
+    private int remaining;
+    private boolean majorX;
+    private int stepX;
+    private int stepY;
+    private int deltaMajor;
+    private int deltaMinor;
+    private int error;
+    private boolean reversed;
+
+    /**
+     * Create a line to be given its endpoints later, with reset.
+     */
+    public BresenhamLine() {
+        reset(0, 0, 0, 0);
+        remaining = 0;
+    }
 
     public BresenhamLine(Point a, Point b) {
-        this.startX = a.getX();
-        this.startY = a.getY();
-        this.endX = b.getX();
-        this.endY = b.getY();
-        this.line = new LinkedList<>();
+        reset(a.getX(), a.getY(), b.getX(), b.getY());
     }
 
     /**
+     * Give the line new endpoints, and move the cursor back to before its start.
+     *
      * Bresenham's line algorithm works for when the line is in octant zero. In this octant, lines
      * begin at the origin and increase with a slope between 0 and 1. Therefore, we must transform
-     * coordinate so that they fit this constraint. This method is the first step of this
-     * transformation process. Here, we check where startX < endX or startY < endY and then
-     * swap the coordinates appropriately.
+     * coordinates so that they fit this constraint. The axis along which the line is longer is
+     * its major axis, which is stepped along once per tile. The other, minor, axis is stepped
+     * along whenever the error term says the line has drifted far enough.
      *
-     * @return : A linked list containing all points on the Bresenham line.
+     * @param x1 : The x-coordinate of the start of the line.
+     * @param y1 : The y-coordinate of the start of the line.
+     * @param x2 : The x-coordinate of the end of the line.
+     * @param y2 : The y-coordinate of the end of the line.
+     * @return : This line.
      */
-    public LinkedList<Point> plotLine() {
-        if (Math.abs(endY - startY) < Math.abs(endX - startX)) {
-            if (startX > endX) {
-                plotLineLow(endX, endY, startX, startY);
-            } else {
-                plotLineLow(startX, startY, endX, endY);
-            }
-        } else {
-            if (startY > endY) {
-                plotLineHigh(endX, endY, startX, startY);
-            } else {
-                plotLineHigh(startX, startY, endX, endY);
-            }
-        }
-        return line;
+    public BresenhamLine reset(int x1, int y1, int x2, int y2) {
+        startX = x1;
+        startY = y1;
+        endX = x2;
+        endY = y2;
+
+        int deltaX = x2 - x1;
+        int deltaY = y2 - y1;
+        majorX = Math.abs(deltaY) < Math.abs(deltaX);
+        stepX = deltaX < 0 ? -1 : 1;
+        stepY = deltaY < 0 ? -1 : 1;
+        deltaMajor = majorX ? Math.abs(deltaX) : Math.abs(deltaY);
+        deltaMinor = majorX ? Math.abs(deltaY) : Math.abs(deltaX);
+        error = 2 * deltaMinor - deltaMajor;
+
+        // The algorithm is defined walking up the major axis. Walking down it instead, ties
+        // are broken the other way so that the same tiles are chosen.
+        reversed = majorX ? deltaX < 0 : deltaY < 0;
+
+        x = x1;
+        y = y1;
+        remaining = deltaMajor + 1;
+        return this;
     }
 
     /**
-     * The previous method swapped coordinates depending on their relative magnitude. Inputs
-     * sent to this method have gradients between 0 and -1. Thus, there is a check to see
-     * whether y needs to be increased or decreased via dy.
-     *
-     * @param x1 : The beginning x-coordinate. May have been swapped.
-     * @param y1 : The beginning y-coordinate. May have been swapped.
-     * @param x2 : The ending x-coordinate. May have been swapped.
-     * @param y2 : The ending y-coordinate. May have been swapped.
+     * @return : The number of tiles on the line, including both ends.
      */
-    private void plotLineLow(int x1, int y1, int x2, int y2) {
-        int deltaX = x2 - x1;
-        int deltaY = y2 - y1;
-        int ySlope = 1;
+    public int length() {
+        return deltaMajor + 1;
+    }
+
+    /**
+     * @return : Whether there are tiles of the line still to be walked.
+     */
+    public boolean hasNext() {
+        return remaining > 0;
+    }
 
-        if (deltaY < 0) {
-            ySlope = -1;
-            deltaY = -deltaY;
+    /**
+     * Move the cursor to the next tile of the line. The first call moves it to the start.
+     *
+     * @return : Whether there was a next tile, i.e., whether the end had not been passed.
+     */
+    public boolean advance() {
+        if (remaining == 0) {
+            return false;
+        }
+        if (remaining <= deltaMajor) {
+            step();
         }
+        remaining -= 1;
+        return true;
+    }
 
-        int error = 2 * deltaY - deltaX;
-        int y = y1;
+    /**
+     * @return : The x-coordinate of the tile the cursor is at.
+     */
+    public int getX() {
+        return x;
+    }
 
-        for (int x = x1; x <= x2; x += 1) {
-            line.add(new Point(x, y));
+    /**
+     * @return : The y-coordinate of the tile the cursor is at.
+     */
+    public int getY() {
+        return y;
+    }
 
-            if (error > 0) {
-                y += ySlope;
-                error -= 2 * deltaX;
+    /**
+     * Walk the tiles of the line still to be walked, until the visitor asks to stop.
+     *
+     * @param visitor : The visitor given each tile.
+     * @return : Whether the whole line was walked without the visitor stopping it.
+     */
+    public boolean walk(Visitor visitor) {
+        while (advance()) {
+            if (!visitor.visit(x, y)) {
+                return false;
             }
-
-            error += 2 * deltaY;
         }
+        return true;
     }
 
     /**
-     * The previous method swapped coordinates depending on their relative magnitudes. Inputs
-     * sent to this method have slopes greater than 1.
+     * Write the tiles of the line still to be walked into the given array, packed into ints
+     * (see Point.pack), walking the line to its end.
      *
-     * @param x1 : The beginning x-coordinate. May have been swapped.
-     * @param y1 : The beginning y-coordinate. May have been swapped.
-     * @param x2 : The ending x-coordinate. May have been swapped.
-     * @param y2 : The ending y-coordinate. May have been swapped.
+     * @param buffer : The array to write to. It must have room for every tile still to be walked.
+     * @return : The number of tiles written.
      */
-    private void plotLineHigh(int x1, int y1, int x2, int y2) {
-        int deltaX = x2 - x1;
-        int deltaY = y2 - y1;
-        int xSlope = 1;
-
-        if (deltaX < 0) {
-            xSlope = -1;
-            deltaX = -deltaX;
+    public int plot(int[] buffer) {
+        if (buffer.length < remaining) {
+            throw new IllegalArgumentException("buffer holds " + buffer.length
+                    + " tiles, line has " + remaining);
+        }
+        int count = 0;
+        while (advance()) {
+            buffer[count] = Point.pack(x, y);
+            count += 1;
         }
+        return count;
+    }
 
-        int error = 2 * deltaX - deltaY;
-        int x = x1;
+    /**
+     * @return : Every tile of the line, from its start to its end, packed into ints (see
+     *           Point.pack).
+     */
+    public int[] toArray() {
+        reset(startX, startY, endX, endY);
+        int[] tiles = new int[length()];
+        plot(tiles);
+        return tiles;
+    }
 
-        for (int y = y1; y <= y2; y += 1) {
-            line.add(new Point(x, y));
+    /**
+     * Plot the line as a list of points. The points run up the major axis of the line, which
+     * may be from its end to its start.
+     *
+     * @return : A linked list containing all points on the Bresenham line.
+     */
+    public LinkedList<Point> plotLine() {
+        LinkedList<Point> line = new LinkedList<>();
+        BresenhamLine walker = new BresenhamLine();
 
-            if (error > 0) {
-                x += xSlope;
-                error -= 2 * deltaY;
+        if (reversed) {
+            walker.reset(endX, endY, startX, startY);
+        } else {
+            walker.reset(startX, startY, endX, endY);
+        }
+        while (walker.advance()) {
+            line.add(new Point(walker.getX(), walker.getY()));
+        }
+        return line;
+    }
+
+    /**
+     * Move the cursor one tile along the major axis, and along the minor axis if the line has
+     * drifted far enough from the cursor.
+     */
+    private void step() {
+        if (error > 0 || (reversed && error == 0)) {
+            if (majorX) {
+                y += stepY;
+            } else {
+                x += stepX;
             }
+            error -= 2 * deltaMajor;
+        }
+        error += 2 * deltaMinor;
 
-            error += 2 * deltaX;
+        if (majorX) {
+            x += stepX;
+        } else {
+            y += stepY;
         }
     }
+
+    /**
+     * Something given each tile of a line in turn.
+     */
+    public interface Visitor {
+        /**
+         * @param x : The x-coordinate of the tile.
+         * @param y : The y-coordinate of the tile.
+         * @return : Whether to go on to the next tile.
+         */
+        boolean visit(int x, int y);
+    }
 }
@@ -0,0 +1,176 @@
+package byog.Core;
+
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.Set;
+
+/**
+ * Checks BresenhamLine against the line algorithm it replaced, for every line between two tiles
+ * of a square. plotLine must give the very same points in the same order. Walking the line with
+ * its cursor must give the same tiles, from the start of the line to its end, whichever way
+ * ties are broken on the way.
+ *
+ * Run with "java byog.Core.BresenhamLineCheck". It exits with status 1 if any check fails.
+ */
+final class BresenhamLineCheck {
+    private static final int SIZE = 19;
+
+    private BresenhamLineCheck() {
+    }
+
+    public static void main(String[] args) {
+        BresenhamLine cursor = new BresenhamLine();
+        int[] buffer = new int[SIZE];
+        int lines = 0;
+        int failures = 0;
+
+        for (int x1 = 0; x1 < SIZE; x1 += 1) {
+            for (int y1 = 0; y1 < SIZE; y1 += 1) {
+                for (int x2 = 0; x2 < SIZE; x2 += 1) {
+                    for (int y2 = 0; y2 < SIZE; y2 += 1) {
+                        lines += 1;
+                        LinkedList<Point> expected = plotLine(x1, y1, x2, y2);
+                        LinkedList<Point> actual =
+                                new BresenhamLine(new Point(x1, y1), new Point(x2, y2)).plotLine();
+                        if (!samePoints(expected, actual)) {
+                            failures += fail("plotLine", x1, y1, x2, y2);
+                        }
+
+                        Set<Integer> tiles = new HashSet<>();
+                        for (Point point : expected) {
+                            tiles.add(Point.pack(point.getX(), point.getY()));
+                        }
+                        cursor.reset(x1, y1, x2, y2);
+                        int count = 0;
+                        boolean same = cursor.length() == expected.size();
+                        while (same && cursor.advance()) {
+                            same = tiles.contains(Point.pack(cursor.getX(), cursor.getY()))
+                                    && (count > 0 || cursor.getX() == x1 && cursor.getY() == y1);
+                            count += 1;
+                        }
+                        same &= count == expected.size() && cursor.getX() == x2
+                                && cursor.getY() == y2;
+                        if (!same) {
+                            failures += fail("reset and advance", x1, y1, x2, y2);
+                        }
+
+                        count = cursor.reset(x1, y1, x2, y2).plot(buffer);
+                        int[] array = cursor.toArray();
+                        same = count == array.length;
+                        for (int i = 0; same && i < count; i += 1) {
+                            same = buffer[i] == array[i] && tiles.contains(buffer[i]);
+                        }
+                        if (!same) {
+                            failures += fail("plot", x1, y1, x2, y2);
+                        }
+                    }
+                }
+            }
+        }
+
+        System.out.println(lines + " lines checked.");
+        System.out.println(failures == 0 ? "All checks passed." : failures + " checks failed.");
+        if (failures != 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return : Whether the two lists hold the same points in the same order.
+     */
+    private static boolean samePoints(LinkedList<Point> expected, LinkedList<Point> actual) {
+        if (expected.size() != actual.size()) {
+            return false;
+        }
+        for (int i = 0; i < expected.size(); i += 1) {
+            if (expected.get(i).getX() != actual.get(i).getX()
+                    || expected.get(i).getY() != actual.get(i).getY()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return : One, after reporting the failed check.
+     */
+    private static int fail(String name, int x1, int y1, int x2, int y2) {
+        System.out.println("FAILED " + name + ": (" + x1 + ", " + y1 + ") to (" + x2 + ", " + y2
+                + ")");
+        return 1;
+    }
+
+    /**
+     * The line algorithm BresenhamLine replaced, which always walked a line up its major axis,
+     * swapping its ends to do so.
+     *
+     * @return : A linked list containing all points on the line.
+     */
+    private static LinkedList<Point> plotLine(int startX, int startY, int endX, int endY) {
+        LinkedList<Point> line = new LinkedList<>();
+        if (Math.abs(endY - startY) < Math.abs(endX - startX)) {
+            if (startX > endX) {
+                plotLineLow(line, endX, endY, startX, startY);
+            } else {
+                plotLineLow(line, startX, startY, endX, endY);
+            }
+        } else {
+            if (startY > endY) {
+                plotLineHigh(line, endX, endY, startX, startY);
+            } else {
+                plotLineHigh(line, startX, startY, endX, endY);
+            }
+        }
+        return line;
+    }
+
+    private static void plotLineLow(LinkedList<Point> line, int x1, int y1, int x2, int y2) {
+        int deltaX = x2 - x1;
+        int deltaY = y2 - y1;
+        int ySlope = 1;
+
+        if (deltaY < 0) {
+            ySlope = -1;
+            deltaY = -deltaY;
+        }
+
+        int error = 2 * deltaY - deltaX;
+        int y = y1;
+
+        for (int x = x1; x <= x2; x += 1) {
+            line.add(new Point(x, y));
+
+            if (error > 0) {
+                y += ySlope;
+                error -= 2 * deltaX;
+            }
+
+            error += 2 * deltaY;
+        }
+    }
+
+    private static void plotLineHigh(LinkedList<Point> line, int x1, int y1, int x2, int y2) {
+        int deltaX = x2 - x1;
+        int deltaY = y2 - y1;
+        int xSlope = 1;
+
+        if (deltaX < 0) {
+            xSlope = -1;
+            deltaX = -deltaX;
+        }
+
+        int error = 2 * deltaX - deltaY;
+        int x = x1;
+
+        for (int y = y1; y <= y2; y += 1) {
+            line.add(new Point(x, y));
+
+            if (error > 0) {
+                x += xSlope;
+                error -= 2 * deltaY;
+            }
+
+            error += 2 * deltaX;
+        }
+    }
+}
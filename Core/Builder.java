@@ -1,60 +1,42 @@
 package byog.Core;
 
 import byog.TileEngine.TETile;
-import java.util.LinkedList;
+import byog.TileEngine.TileGrid;
 import java.util.Random;
+import java.util.function.IntConsumer;
 
 /**
  * Class for rendering structures as tiles in the world.
  */
 public class Builder implements java.io.Serializable {
     private World world;
-    private TETile[][] worldTiles;
     private TETile floor;
     private TETile empty;
     private TETile[] decorativeWallTiles;
-    private LinkedList<Point> wallTiles;
-    private Random random;
+    private PositionSet wallTiles;
 
     Builder(World world) {
         this.world = world;
-        this.worldTiles = world.getTileArray();
         this.floor = world.getFloor();
         this.empty = world.getEmpty();
         this.decorativeWallTiles = world.getDecorativeTiles();
-        this.wallTiles = new LinkedList<>();
-        this.random = world.getRandom();
+        this.wallTiles = new PositionSet();
     }
 
     /**
      * @return : All the wall tiles built so far.
      */
-    public LinkedList<Point> getWallTiles() {
+    public PositionSet getWallTiles() {
         return wallTiles;
     }
 
-    /**
-     * Make the structure corresponding the linked list of tiles input. This structure  may
-     * be any structure within the world.
-     *
-     * @param tiles : The tiles making up the structure.
-     * @param material : The material of which the tiles are.
-     */
-    private void makeStructure(LinkedList<Point> tiles, TETile material) {
-        for (Point tile : tiles) {
-            world.changeTile(tile, material);
-        }
-    }
-
     /**
      * Build each room in the room collection.
      *
      * @param rooms : A linked list of rooms of the world.
      */
     public void buildRooms(RoomCollection rooms) {
-        for (int room = 0; room < rooms.size(); room += 1) {
-            makeStructure(rooms.get(room).getTiles(), floor);
-        }
+        carveRooms(world.getTileGrid(), rooms, floor);
     }
 
     /**
@@ -63,49 +45,93 @@ public class Builder implements java.io.Serializable {
      * @param hallways : A linked list of hallways of the world.
      */
     public void buildHallways(HallwayCollection hallways) {
-        LinkedList<Point> currentHall;
+        carveHallways(world.getTileGrid(), hallways, floor);
+    }
+
+    /**
+     * Carve the floor of each room into the given tiles, for both worlds and chunks.
+     *
+     * @param tiles : The tiles to carve into.
+     * @param rooms : The rooms to carve.
+     * @param floor : The floor tile.
+     */
+    static void carveRooms(TileGrid tiles, RoomCollection rooms, TETile floor) {
+        for (int room = 0; room < rooms.size(); room += 1) {
+            rooms.get(room).fill(tiles, floor);
+        }
+    }
 
+    /**
+     * Carve the floor of each hallway into the given tiles, for both worlds and chunks.
+     *
+     * @param tiles : The tiles to carve into.
+     * @param hallways : The hallways to carve.
+     * @param floor : The floor tile.
+     */
+    static void carveHallways(TileGrid tiles, HallwayCollection hallways, TETile floor) {
         for (int hallway = 0; hallway < hallways.size(); hallway += 1) {
-            currentHall = hallways.get(hallway).getHallway();
-            makeStructure(currentHall, floor);
+            hallways.get(hallway).fill(tiles, floor);
         }
     }
 
     /**
-     * Build the walls of the world. This checks each tile in the world to see whether
-     * it is an empty tile or a floor tile. If it is a floor tile, a random type of wall
-     * tile is assigned, and then all adjacent tiles are checked. If an adjacent tile is
-     * an empty tile, it is changed to a wall.
+     * Build the walls of the world. Every tile not on the edge of the world is checked in turn,
+     * column by column. If it is not an empty tile, each adjacent empty tile is changed to a
+     * random type of wall tile. Walls built this way are themselves checked later on.
+     *
+     * Which tiles become walls is worked out up front by WallMask, 64 tiles at a time. The wall
+     * types are then assigned in the order the tile-by-tile check would build them, so the world
+     * is the same for a given seed.
      */
     public void buildWalls() {
-        for (int row = 1; row < worldTiles.length - 1; row += 1) {
-            for (int col = 1; col < worldTiles[0].length - 1; col += 1) {
-                String tileDesrip = world.getTile(new Point(row, col)).description();
-                if (!tileDesrip.equals(empty.description())) {
-
-                    Point[] checkPoints = new Point[]{new Point(row + 1, col),
-                        new Point(row - 1, col),
-                        new Point(row, col + 1),
-                        new Point(row, col - 1),
-                        new Point(row + 1, col + 1),
-                        new Point(row - 1, col + 1),
-                        new Point(row + 1, col - 1),
-                        new Point(row - 1, col - 1)};
-
-                    // All adjacent tiles are checked to see if empty and then assigned.
-                    for (Point checkPoint : checkPoints) {
-                        if (world.getTile(checkPoint).equals(empty)) {
-                            int randTile = random.nextInt(decorativeWallTiles.length);
-
-                            world.changeTile(checkPoint, decorativeWallTiles[randTile]);
-                            wallTiles.add(checkPoint);
-                        }
-                    }
+        WallMask mask = new WallMask(world.getTileGrid(), empty);
+        long[] sources = mask.cascadeSources();
+        long[] walls = mask.cascade(sources);
+        int words = mask.getWords();
+        Random random = world.getRandom(GenerationStage.WALLS);
+
+        for (int row = 1; row < world.getWidth() - 1; row += 1) {
+            for (int word = 0; word < words; word += 1) {
+                long remaining = sources[row * words + word];
+
+                while (remaining != 0) {
+                    int col = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+
+                    // All adjacent tiles are checked in the same order as they always have been.
+                    buildWall(mask, walls, random, row + 1, col);
+                    buildWall(mask, walls, random, row - 1, col);
+                    buildWall(mask, walls, random, row, col + 1);
+                    buildWall(mask, walls, random, row, col - 1);
+                    buildWall(mask, walls, random, row + 1, col + 1);
+                    buildWall(mask, walls, random, row - 1, col + 1);
+                    buildWall(mask, walls, random, row + 1, col - 1);
+                    buildWall(mask, walls, random, row - 1, col - 1);
                 }
             }
         }
     }
 
+    /**
+     * Build a random type of wall at the given tile, if it is still to be built.
+     *
+     * @param mask : The mask the walls were found with.
+     * @param walls : The walls still to be built.
+     * @param random : The random object choosing the type of wall.
+     * @param x : The x-coordinate of the tile.
+     * @param y : The y-coordinate of the tile.
+     */
+    private void buildWall(WallMask mask, long[] walls, Random random, int x, int y) {
+        if (!mask.contains(walls, x, y)) {
+            return;
+        }
+        mask.remove(walls, x, y);
+
+        int randTile = World.DECORATIVEVARIANTS.sample(random);
+        world.changeTile(x, y, decorativeWallTiles[randTile]);
+        wallTiles.add(x, y);
+    }
+
     /**
      * Place traps within the world's rooms in a random manner.
      *
@@ -113,11 +139,8 @@ public class Builder implements java.io.Serializable {
      *                    while a frequency of zero is no tiles.
      */
     public void placeTraps(double frequency) {
-        for (Point tile : world.getRoomCollection().getFloorTiles()) {
-            if (world.getRandom().nextDouble() < frequency) {
-                world.addTrap(tile);
-            }
-        }
+        placeItems(GenerationStage.TRAPS, frequency, tile -> world.addTrap(
+                new Point(Point.unpackX(tile), Point.unpackY(tile))));
     }
 
     /**
@@ -128,32 +151,57 @@ public class Builder implements java.io.Serializable {
      * @param frequency : The wanted frequency of energy tiles.
      */
     public void placeEnergy(double frequency) {
-        for (Point tile : world.getRoomCollection().getFloorTiles()) {
-            if (world.getRandom().nextDouble() < frequency) {
-                world.addEnergy(tile);
-            }
+        placeItems(GenerationStage.ENERGY, frequency, tile -> world.addEnergy(
+                new Point(Point.unpackX(tile), Point.unpackY(tile))));
+    }
+
+    /**
+     * Choose room floor tiles at random for an item, each with the given frequency. The floor
+     * tiles are taken room by room, in the room collection's order, and column by column from
+     * the bottom-left of each room.
+     *
+     * Legacy worlds draw one random number per floor tile, choosing the tile if it is below the
+     * frequency, which reproduces the items they have always had. Other worlds draw the gap to
+     * the next chosen tile instead (see RoomCollection.forEachSampledFloorTile), so only one
+     * random number is drawn per item. Both choose each tile with the same chance, but do not
+     * choose the same tiles for a given seed.
+     *
+     * @param stage : The generation stage placing the item.
+     * @param frequency : The chance of choosing any one floor tile.
+     * @param place : The action placing the item on each chosen packed tile.
+     */
+    private void placeItems(GenerationStage stage, double frequency, IntConsumer place) {
+        RoomCollection rooms = world.getRoomCollection();
+        Random random = world.getRandom(stage);
+
+        if (world.isLegacyLayout()) {
+            rooms.forEachFloorTile(tile -> {
+                if (random.nextDouble() < frequency) {
+                    place.accept(tile);
+                }
+            });
+        } else {
+            rooms.forEachSampledFloorTile(random, frequency, place);
         }
     }
 
     /**
      * Demolish all of the traps in the world. Replace them with floor tiles.
      *
-     * @param traps : The list of traps to be demolished.
+     * @param traps : The positions of the traps to be demolished.
      */
-    public void demolishAllTraps(LinkedList<Point> traps) {
-        for (Point trapTile : traps) {
-            world.changeTile(trapTile, floor);
-        }
+    public void demolishAllTraps(PositionSet traps) {
+        traps.forEach(trapTile -> world.changeTile(Point.unpackX(trapTile),
+                Point.unpackY(trapTile), floor));
     }
 
     /**
      * Demolish all of the energys in the world. Replace them with floor tiles.
      *
-     * @param energys : The list of energys to be demolished.
+     * @param energys : The positions of the energys to be demolished.
      */
-    public void demolishAllEnergys(LinkedList<Point> energys) {
-        for (Point energyTile : energys) {
-            world.changeTile(energyTile, floor);
-        }
+    public void demolishAllEnergys(PositionSet energys) {
+        energys.forEach(energyTile -> world.changeTile(Point.unpackX(energyTile),
+                Point.unpackY(energyTile), floor));
     }
 }
@@ -0,0 +1,99 @@
+package byog.Core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A field of view which remembers what was visible from the positions it was last asked about.
+ * What can be seen from a position only changes when a tile starts or stops blocking sight, so
+ * walking back through parts of the world already explored costs a lookup rather than another
+ * sweep. The visibilities are kept compressed (see Visibility.compress).
+ *
+ * The positions are held in least recently used order, and once there are more than the
+ * capacity allows, the position used longest ago is forgotten. Everything is forgotten whenever
+ * the world's opacity version changes, or a different world is looked at.
+ */
+public class CachedFieldOfView implements FieldOfView {
+    private final FieldOfView source;
+    private final LinkedHashMap<Integer, long[]> cache;
+    private World cachedWorld;
+    private long cachedVersion;
+    private Visibility scratch;
+    private long hits;
+    private long misses;
+
+    /**
+     * @param source : The field of view finding what is not yet remembered.
+     * @param capacity : The maximum number of positions remembered at once.
+     */
+    public CachedFieldOfView(FieldOfView source, int capacity) {
+        if (source == null) {
+            throw new IllegalArgumentException("source must not be null");
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.source = source;
+        this.cache = new LinkedHashMap<Integer, long[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, long[]> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    @Override
+    public void compute(World world, int originX, int originY, Visibility visible) {
+        if (world != cachedWorld || world.getOpacityVersion() != cachedVersion) {
+            cache.clear();
+            cachedWorld = world;
+            cachedVersion = world.getOpacityVersion();
+        }
+
+        int key = Point.pack(originX, originY);
+        long[] compressed = cache.get(key);
+
+        if (compressed != null) {
+            hits += 1;
+        } else {
+            misses += 1;
+            if (scratch == null || scratch.getWidth() != visible.getWidth()
+                    || scratch.getHeight() != visible.getHeight()) {
+                scratch = new Visibility(visible.getWidth(), visible.getHeight());
+            }
+            scratch.clear();
+            source.compute(world, originX, originY, scratch);
+            compressed = scratch.compress();
+            cache.put(key, compressed);
+        }
+        visible.merge(compressed);
+    }
+
+    /**
+     * @return : The field of view finding what is not yet remembered.
+     */
+    public FieldOfView getSource() {
+        return source;
+    }
+
+    /**
+     * @return : The number of positions currently remembered.
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    /**
+     * @return : The number of times what was visible was remembered.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return : The number of times what was visible had to be found.
+     */
+    public long getMisses() {
+        return misses;
+    }
+}
@@ -0,0 +1,181 @@
+package byog.Core;
+
+import byog.TileEngine.TETile;
+import byog.TileEngine.TileGrid;
+import byog.TileEngine.Tileset;
+import java.util.Random;
+
+/**
+ * A fixed-size square section of a chunked world. A chunk is generated entirely from the world
+ * seed and its own chunk coordinates, so it can be thrown away and generated again later with the
+ * same result.
+ *
+ * Generation within a chunk runs the same stages as World, sharing their code: rooms are randomly
+ * placed (keeping a one tile margin from the chunk edge) and joined by hallways along a spanning
+ * tree. Each edge shared with a neighboring chunk has a door, whose position is derived from the
+ * edge itself so that both chunks agree on it. The first room is connected to every door, which
+ * stitches the chunks together into one connected cave. Finally, walls, traps and energy are
+ * placed. Only the walls differ from World's: a chunk walls in the outline of its floor, so that
+ * the walls of neighboring chunks line up (see buildWalls).
+ */
+public class Chunk {
+    private static final TETile FLOOR = Tileset.FLOOR;
+    private static final TETile EMPTY = Tileset.NOTHING;
+
+    private final int chunkX;
+    private final int chunkY;
+    private final int size;
+    private final TileGrid tiles;
+    private final RoomCollection rooms;
+    private final Random random;
+
+    Chunk(ChunkedWorld world, int chunkX, int chunkY) {
+        this.chunkX = chunkX;
+        this.chunkY = chunkY;
+        this.size = world.getChunkSize();
+        this.tiles = new TileGrid(size, size, EMPTY);
+        this.rooms = new RoomCollection();
+        this.random = new StreamRandom(world.chunkSeed(chunkX, chunkY));
+
+        // The first placement attempt always succeeds, so every chunk has at least one room.
+        World.placeRooms(rooms, random, world.getRoomAttempts(), size, size, false, null);
+        Builder.carveRooms(tiles, rooms, FLOOR);
+        Builder.carveHallways(tiles, World.planHallways(rooms), FLOOR);
+        carveDoors(world);
+        buildWalls();
+        placeItems(Tileset.TRAP, World.TRAP_FREQUENCY);
+        placeItems(Tileset.ENERGY, World.ENERGY_FREQUENCY);
+    }
+
+    /**
+     * @return : The x-coordinate of this chunk, in chunks.
+     */
+    public int getChunkX() {
+        return chunkX;
+    }
+
+    /**
+     * @return : The y-coordinate of this chunk, in chunks.
+     */
+    public int getChunkY() {
+        return chunkY;
+    }
+
+    /**
+     * @return : The rooms of this chunk, in chunk-local coordinates.
+     */
+    public RoomCollection getRoomCollection() {
+        return rooms;
+    }
+
+    /**
+     * @param x : The chunk-local x-coordinate.
+     * @param y : The chunk-local y-coordinate.
+     * @return : The tile at the given position.
+     */
+    public TETile getTile(int x, int y) {
+        return tiles.get(x, y);
+    }
+
+    /**
+     * Change the tile at the given chunk-local position.
+     *
+     * @param x : The chunk-local x-coordinate.
+     * @param y : The chunk-local y-coordinate.
+     * @param tile : The new tile.
+     */
+    public void changeTile(int x, int y, TETile tile) {
+        tiles.set(x, y, tile);
+    }
+
+    /**
+     * Connect the first room to the door on every edge shared with another chunk. Each corridor
+     * leaves the chunk perpendicular to its edge, so it meets the neighbor's corridor head on.
+     *
+     * @param world : The world this chunk belongs to.
+     */
+    private void carveDoors(ChunkedWorld world) {
+        Point center = rooms.get(0).getCenter();
+        int last = size - 1;
+
+        if (world.hasChunk(chunkX + 1, chunkY)) {
+            int door = world.doorOffset(chunkX, chunkY, true);
+            carveColumn(center.getX(), center.getY(), door);
+            carveRow(door, center.getX(), last);
+        }
+        if (world.hasChunk(chunkX - 1, chunkY)) {
+            int door = world.doorOffset(chunkX - 1, chunkY, true);
+            carveColumn(center.getX(), center.getY(), door);
+            carveRow(door, 0, center.getX());
+        }
+        if (world.hasChunk(chunkX, chunkY + 1)) {
+            int door = world.doorOffset(chunkX, chunkY, false);
+            carveRow(center.getY(), center.getX(), door);
+            carveColumn(door, center.getY(), last);
+        }
+        if (world.hasChunk(chunkX, chunkY - 1)) {
+            int door = world.doorOffset(chunkX, chunkY - 1, false);
+            carveRow(center.getY(), center.getX(), door);
+            carveColumn(door, 0, center.getY());
+        }
+    }
+
+    /**
+     * Carve floor along a column between two rows, inclusive.
+     */
+    private void carveColumn(int x, int y1, int y2) {
+        for (int y = Math.min(y1, y2); y <= Math.max(y1, y2); y += 1) {
+            tiles.set(x, y, FLOOR);
+        }
+    }
+
+    /**
+     * Carve floor along a row between two columns, inclusive.
+     */
+    private void carveRow(int y, int x1, int x2) {
+        for (int x = Math.min(x1, x2); x <= Math.max(x1, x2); x += 1) {
+            tiles.set(x, y, FLOOR);
+        }
+    }
+
+    /**
+     * Build walls wherever an empty tile of the chunk touches a floor tile of the chunk. Doors
+     * are the only floor on a chunk edge, and both chunks sharing a door wall it in the same way,
+     * so the walls line up across chunk borders. The walls are found by WallMask as the outline
+     * of the floor.
+     */
+    private void buildWalls() {
+        WallMask mask = new WallMask(tiles, EMPTY);
+        long[] walls = mask.outline();
+        int words = mask.getWords();
+
+        for (int x = 0; x < size; x += 1) {
+            for (int word = 0; word < words; word += 1) {
+                long remaining = walls[x * words + word];
+
+                while (remaining != 0) {
+                    int y = (word << 6) + Long.numberOfTrailingZeros(remaining);
+                    remaining &= remaining - 1;
+                    tiles.set(x, y, World.decorativeWall(random));
+                }
+            }
+        }
+    }
+
+    /**
+     * Place an item on room floor tiles at the given frequency.
+     *
+     * @param item : The item tile.
+     * @param frequency : The chance of placing the item on any one floor tile.
+     */
+    private void placeItems(TETile item, double frequency) {
+        rooms.forEachSampledFloorTile(random, frequency, tile -> {
+            int x = Point.unpackX(tile);
+            int y = Point.unpackY(tile);
+
+            if (tiles.get(x, y) == FLOOR) {
+                tiles.set(x, y, item);
+            }
+        });
+    }
+}
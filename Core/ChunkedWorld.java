@@ -0,0 +1,251 @@
+package byog.Core;
+
+import byog.TileEngine.TETile;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A world made of fixed-size chunks which are generated on demand, for maps far too large to
+ * allocate as a single tile array. Each chunk is generated from the world seed and its chunk
+ * coordinates alone (see Chunk), and neighboring chunks are joined by doors on their shared
+ * edges, so the world as a whole is one connected cave.
+ *
+ * Only a bounded number of chunks are kept in memory. They are held in least recently used
+ * order, and once there are more than the capacity allows, the chunk used longest ago is
+ * evicted. An evicted chunk is simply generated again the next time it is needed. Changes made
+ * to tiles are remembered separately and reapplied whenever their chunk is generated, so that
+ * memory is bounded by the resident chunks and the number of changes, not by the world area.
+ */
+public class ChunkedWorld {
+    private static final int CHUNK_SIZE = 64;
+    private static final int ROOM_ATTEMPTS = 400;
+
+    private final long seed;
+    private final int widthInChunks;
+    private final int heightInChunks;
+    private final LinkedHashMap<Long, Chunk> resident;
+    private final HashMap<Long, HashMap<Integer, TETile>> changes;
+    private long chunksGenerated;
+
+    /**
+     * @param seed : The world seed.
+     * @param width : The width of the world in tiles. Rounded up to a whole number of chunks, so
+     *                getWidth may be larger.
+     * @param height : The height of the world in tiles. Rounded up to a whole number of chunks,
+     *                 so getHeight may be larger.
+     * @param capacity : The maximum number of chunks kept in memory at once.
+     */
+    public ChunkedWorld(long seed, int width, int height, int capacity) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("invalid world size: " + width + "x" + height);
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.seed = seed;
+        this.widthInChunks = (width + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        this.heightInChunks = (height + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        this.changes = new HashMap<>();
+        this.resident = new LinkedHashMap<Long, Chunk>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return : The width of the world in tiles.
+     */
+    public int getWidth() {
+        return widthInChunks * CHUNK_SIZE;
+    }
+
+    /**
+     * @return : The height of the world in tiles.
+     */
+    public int getHeight() {
+        return heightInChunks * CHUNK_SIZE;
+    }
+
+    /**
+     * @return : The width and height of every chunk, in tiles.
+     */
+    public int getChunkSize() {
+        return CHUNK_SIZE;
+    }
+
+    /**
+     * @return : The number of room placement attempts made in each chunk.
+     */
+    int getRoomAttempts() {
+        return ROOM_ATTEMPTS;
+    }
+
+    /**
+     * @return : The number of chunks currently held in memory.
+     */
+    public int residentChunks() {
+        return resident.size();
+    }
+
+    /**
+     * @return : The number of chunks generated so far, including regenerated chunks.
+     */
+    public long chunksGenerated() {
+        return chunksGenerated;
+    }
+
+    /**
+     * @return : The position a player should start at, the center of the first room of the
+     *           first chunk.
+     */
+    public Point getSpawn() {
+        return getChunk(0, 0).getRoomCollection().get(0).getCenter();
+    }
+
+    /**
+     * @param chunkX : The x-coordinate of a chunk, in chunks.
+     * @param chunkY : The y-coordinate of a chunk, in chunks.
+     * @return : Whether the chunk lies within the world.
+     */
+    public boolean hasChunk(int chunkX, int chunkY) {
+        return chunkX >= 0 && chunkX < widthInChunks && chunkY >= 0 && chunkY < heightInChunks;
+    }
+
+    /**
+     * Retrieve a chunk, generating it if it is not in memory.
+     *
+     * @param chunkX : The x-coordinate of the chunk, in chunks.
+     * @param chunkY : The y-coordinate of the chunk, in chunks.
+     * @return : The chunk.
+     */
+    public Chunk getChunk(int chunkX, int chunkY) {
+        if (!hasChunk(chunkX, chunkY)) {
+            throw new IllegalArgumentException("chunk out of bounds: " + chunkX + ", " + chunkY);
+        }
+
+        long key = key(chunkX, chunkY);
+        Chunk chunk = resident.get(key);
+
+        if (chunk == null) {
+            chunk = new Chunk(this, chunkX, chunkY);
+            chunksGenerated += 1;
+
+            HashMap<Integer, TETile> chunkChanges = changes.get(key);
+            if (chunkChanges != null) {
+                for (Map.Entry<Integer, TETile> change : chunkChanges.entrySet()) {
+                    chunk.changeTile(change.getKey() / CHUNK_SIZE, change.getKey() % CHUNK_SIZE,
+                            change.getValue());
+                }
+            }
+            resident.put(key, chunk);
+        }
+        return chunk;
+    }
+
+    /**
+     * Retrieve the tile at the given position, which must lie within the world.
+     *
+     * @param position : The position of the wanted tile.
+     * @return : The tile at the given position.
+     */
+    public TETile getTile(Point position) {
+        int x = position.getX();
+        int y = position.getY();
+        checkBounds(x, y);
+        return getChunk(x / CHUNK_SIZE, y / CHUNK_SIZE).getTile(x % CHUNK_SIZE, y % CHUNK_SIZE);
+    }
+
+    /**
+     * Change the tile at the given position, which must lie within the world, to the given tile.
+     * The change outlives the eviction of the chunk.
+     *
+     * @param position : The position to change.
+     * @param newTile : The new tile.
+     */
+    public void changeTile(Point position, TETile newTile) {
+        checkBounds(position.getX(), position.getY());
+        int chunkX = position.getX() / CHUNK_SIZE;
+        int chunkY = position.getY() / CHUNK_SIZE;
+        int localX = position.getX() % CHUNK_SIZE;
+        int localY = position.getY() % CHUNK_SIZE;
+
+        getChunk(chunkX, chunkY).changeTile(localX, localY, newTile);
+
+        long key = key(chunkX, chunkY);
+        HashMap<Integer, TETile> chunkChanges = changes.get(key);
+        if (chunkChanges == null) {
+            chunkChanges = new HashMap<>();
+            changes.put(key, chunkChanges);
+        }
+        chunkChanges.put(localX * CHUNK_SIZE + localY, newTile);
+    }
+
+    /**
+     * Copy a rectangular region of the world into a tile array, e.g., the part of the world
+     * around the player to be rendered. Parts of the region outside the world are left null.
+     *
+     * @param x : The x-coordinate of the bottom left of the region.
+     * @param y : The y-coordinate of the bottom left of the region.
+     * @param width : The width of the region.
+     * @param height : The height of the region.
+     * @return : The tiles of the region.
+     */
+    public TETile[][] getRegion(int x, int y, int width, int height) {
+        TETile[][] region = new TETile[width][height];
+
+        for (int i = 0; i < width; i += 1) {
+            for (int j = 0; j < height; j += 1) {
+                int worldX = x + i;
+                int worldY = y + j;
+
+                if (worldX >= 0 && worldX < getWidth() && worldY >= 0 && worldY < getHeight()) {
+                    region[i][j] = getTile(new Point(worldX, worldY));
+                }
+            }
+        }
+        return region;
+    }
+
+    /**
+     * Check that a position lies within the world, i.e., within getWidth and getHeight.
+     *
+     * @param x : The x-coordinate of the position.
+     * @param y : The y-coordinate of the position.
+     */
+    private void checkBounds(int x, int y) {
+        if (x < 0 || x >= getWidth() || y < 0 || y >= getHeight()) {
+            throw new IllegalArgumentException("position out of bounds: " + x + ", " + y);
+        }
+    }
+
+    /**
+     * @return : The seed from which the given chunk is generated.
+     */
+    long chunkSeed(int chunkX, int chunkY) {
+        return RandomUtils.deriveSeed(RandomUtils.deriveSeed(seed, chunkX), chunkY);
+    }
+
+    /**
+     * Find the position of the door on an edge between two chunks. The edge is named by the
+     * chunk on its west (or south) side, so both chunks sharing it find the same door.
+     *
+     * @param chunkX : The x-coordinate of the chunk west or south of the edge.
+     * @param chunkY : The y-coordinate of the chunk west or south of the edge.
+     * @param eastEdge : Whether the edge is the chunk's east edge, rather than its north edge.
+     * @return : The row (east edge) or column (north edge) of the door, chunk-local.
+     */
+    int doorOffset(int chunkX, int chunkY, boolean eastEdge) {
+        long edgeSeed = RandomUtils.mix(chunkSeed(chunkX, chunkY) ^ (eastEdge ? 1 : 2));
+        return 2 + (int) Math.floorMod(edgeSeed, (long) CHUNK_SIZE - 4);
+    }
+
+    /**
+     * @return : A single key identifying the given chunk.
+     */
+    private static long key(int chunkX, int chunkY) {
+        return ((long) chunkX << 32) | (chunkY & 0xFFFFFFFFL);
+    }
+}
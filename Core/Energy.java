@@ -1,7 +1,6 @@
 package byog.Core;
 
 import byog.TileEngine.TETile;
-import java.util.LinkedList;
 
 /**
  * This class deals with the energys places in the world. These energys allow the buddy
@@ -10,11 +9,11 @@ import java.util.LinkedList;
  */
 public class Energy implements java.io.Serializable {
     private final TETile energy;
-    private LinkedList<Point> allEnergys;
+    private PositionSet allEnergys;
 
     Energy(TETile energyTile) {
         this.energy = energyTile;
-        allEnergys = new LinkedList<>();
+        allEnergys = new PositionSet();
     }
 
     /**
@@ -25,7 +24,7 @@ public class Energy implements java.io.Serializable {
     }
 
     /**
-     * Add an energy to the list of current energys.
+     * Add an energy to the set of current energys.
      *
      * @param position : The position of the new energy.
      */
@@ -34,18 +33,34 @@ public class Energy implements java.io.Serializable {
     }
 
     /**
-     * @return : A list of all the current energys.
+     * @return : The set of all the current energy positions.
      */
-    public LinkedList<Point> getAllEnergys() {
+    public PositionSet getAllEnergys() {
         return allEnergys;
     }
 
     /**
-     * Remove all of the energys from the energy list.
+     * @param position : The position to check.
+     * @return : Whether there is an energy at the given position.
+     */
+    public boolean isEnergy(Point position) {
+        return allEnergys.contains(position);
+    }
+
+    /**
+     * Remove the energy at the given position, if there is one.
+     *
+     * @param position : The position of the energy.
+     * @return : Whether there was an energy at the given position.
+     */
+    public boolean removeEnergy(Point position) {
+        return allEnergys.remove(position);
+    }
+
+    /**
+     * Remove all of the energys from the energy set.
      */
     public void removeAllEnergys() {
-        while (!allEnergys.isEmpty()) {
-            allEnergys.removeFirst();
-        }
+        allEnergys = new PositionSet();
     }
 }
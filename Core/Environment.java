@@ -1,8 +1,13 @@
 package byog.Core;
 
+import byog.TileEngine.ByteGrid;
 import byog.TileEngine.TETile;
+import byog.TileEngine.TileGrid;
+import byog.TileEngine.TilePalette;
+import byog.TileEngine.TileProperties;
 import byog.TileEngine.Tileset;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Random;
 
 /**
  * This class represents the game environment. The World class represents the underlying
@@ -11,56 +16,70 @@ import java.util.LinkedList;
  * of the world's aesthetic, as well as retrieval and storage of information of individual
  * tiles, such as, brightness.
  */
-public class Environment implements java.io.Serializable {
-    private static final TETile FLOORDARK = Tileset.FLOORD;
-    private static final TETile WALL1DARK = Tileset.WALL1D;
-    private static final TETile WALL2DARK = Tileset.WALL2D;
-    private static final TETile WALL3DARK = Tileset.WALL3D;
-    private static final TETile WALL4DARK = Tileset.WALL4D;
-    private static final TETile WALL5DARK = Tileset.WALL5D;
-    private static final TETile[] DECORATIVEWALLSDARK = new TETile[]{WALL1DARK,
-        WALL2DARK,
-        WALL3DARK,
-        WALL4DARK,
-        WALL5DARK};
-    private static final TETile FLOORDIGITAL = Tileset.FLOORV;
+public class Environment implements java.io.Serializable, AutoCloseable {
     private static final TETile WALLDIGITAL = Tileset.WALLV;
-    private static final TETile PLAYERDIGITAL = Tileset.PLAYERV;
-    private static final TETile BUDDYDIGITAL = Tileset.BUDDYV;
     private static final TETile STATICFLOOR1 = Tileset.STATIC1;
     private static final TETile STATICFLOOR2 = Tileset.STATIC2;
     private static final TETile STATICFLOOR3 = Tileset.STATIC3;
     private static final TETile STATICFLOOR4 = Tileset.STATIC4;
     private static final TETile STATICFLOOR5 = Tileset.STATIC5;
+    private static final TETile[] STATICFLOORS = new TETile[]{STATICFLOOR1,
+        STATICFLOOR2, STATICFLOOR3, STATICFLOOR4, STATICFLOOR5};
+    private static final RandomUtils.DiscreteSampler STATICFLOORVARIANTS =
+            RandomUtils.sampler(new int[]{1, 1, 1, 1, 1});
+    private static final int VISIBILITY_CACHE_SIZE = 256;
+    private static final int KEEP = -1;
+    private static final int STATIC = -2;
 
     private World world;
-    private TETile[][] displayWorld;
-    private TETile[][] virtualWorld;
-    private TETile[][] currentWorld;
-    private TETile[][] alternateWorld;
-    private int[][] seenBrightness;
+    private TileGrid displayWorld;
+    private TileGrid virtualWorld;
+    private TileGrid currentWorld;
+    private TileGrid alternateWorld;
+    private ByteGrid seenBrightness;
     private int worldWidth;
     private int worldHeight;
+    private int sightRadius;
+    private transient FieldOfView fieldOfView;
+    private transient Visibility visible;
+    private transient Visibility previousVisible;
+    private transient boolean upToDate;
+    private transient long calculatedVersion;
+    private transient int calculatedX;
+    private transient int calculatedY;
+    private transient Layer[] layers;
+    private transient boolean[] emptyIds;
 
     Environment(World newWorld) {
         this.world  = newWorld;
         this.worldWidth = world.getWidth();
         this.worldHeight = world.getHeight();
 
-        this.displayWorld = new TETile[worldWidth][worldHeight];
-        this.virtualWorld = new TETile[worldWidth][worldHeight];
-        this.seenBrightness = new int[worldWidth][worldHeight];
+        // The layers are kept off-heap whenever the world itself is.
+        if (world.getTileGrid().isOffHeap()) {
+            this.displayWorld = TileGrid.offHeap(worldWidth, worldHeight, world.getEmpty());
+            this.virtualWorld = TileGrid.offHeap(worldWidth, worldHeight, world.getEmpty());
+            this.seenBrightness = ByteGrid.offHeap(worldWidth, worldHeight);
+        } else {
+            this.displayWorld = new TileGrid(worldWidth, worldHeight, world.getEmpty());
+            this.virtualWorld = new TileGrid(worldWidth, worldHeight, world.getEmpty());
+            this.seenBrightness = new ByteGrid(worldWidth, worldHeight);
+        }
         this.currentWorld = displayWorld;
         this.alternateWorld = virtualWorld;
+    }
 
-        // Initialize the display world, virtual world, and brightness array.
-        for (int x = 0; x < worldWidth; x += 1) {
-            for (int y = 0; y < worldHeight; y += 1) {
-                displayWorld[x][y] = world.getEmpty();
-                virtualWorld[x][y] = world.getEmpty();
-                seenBrightness[x][y] = 0;
-            }
-        }
+    /**
+     * Free the world and every layer of the environment. This matters for off-heap worlds,
+     * whose memory is otherwise only freed once they are garbage collected. The environment
+     * cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        displayWorld.close();
+        virtualWorld.close();
+        seenBrightness.close();
+        world.close();
     }
 
     /**
@@ -94,23 +113,87 @@ public class Environment implements java.io.Serializable {
     /**
      * @return : The world that the player is currently in.
      */
-    public TETile[][] getCurrentWorld() {
+    public TileGrid getCurrentWorld() {
         return currentWorld;
     }
 
     /**
      * @return : The world that the player is not currently in.
      */
-    public TETile[][] getAlternateWorld() {
+    public TileGrid getAlternateWorld() {
         return alternateWorld;
     }
 
+    /**
+     * @return : The way the tiles visible to the player are found. With a sight radius, a ray
+     *           table for that radius is used. Otherwise, legacy worlds use the line of sight
+     *           they have always used, and all others use shadowcasting. Either way, what was
+     *           visible from recently visited positions is remembered.
+     */
+    public FieldOfView getFieldOfView() {
+        if (fieldOfView == null) {
+            FieldOfView source;
+            if (sightRadius > 0) {
+                source = RayTable.of(sightRadius);
+            } else if (world.isLegacyLayout()) {
+                source = new LineOfSight();
+            } else {
+                source = new ShadowCasting();
+            }
+            fieldOfView = new CachedFieldOfView(source, VISIBILITY_CACHE_SIZE);
+        }
+        return fieldOfView;
+    }
+
+    /**
+     * Change the way the tiles visible to the player are found. This lasts until the environment
+     * is saved and loaded again.
+     *
+     * @param newFieldOfView : The new field of view.
+     */
+    public void setFieldOfView(FieldOfView newFieldOfView) {
+        if (newFieldOfView == null) {
+            throw new IllegalArgumentException("field of view must not be null");
+        }
+        fieldOfView = newFieldOfView;
+        upToDate = false;
+    }
+
+    /**
+     * @return : The distance beyond which the player cannot see, or zero if there is none.
+     */
+    public int getSightRadius() {
+        return sightRadius;
+    }
+
+    /**
+     * Limit how far the player can see. Within the radius, sight spreads out from the player
+     * along a table of lines worked out in advance, which finds close to, but not always
+     * exactly, the tiles the line of sight finds. The cost of finding them grows with the area
+     * within the radius rather than the size of the world (see RayTable).
+     *
+     * @param radius : The distance beyond which the player cannot see, at most
+     *               RayTable.MAX_RADIUS, or zero for no limit.
+     */
+    public void setSightRadius(int radius) {
+        if (radius < 0 || radius > RayTable.MAX_RADIUS) {
+            throw new IllegalArgumentException("sight radius must be between 0 and "
+                    + RayTable.MAX_RADIUS + ": " + radius);
+        }
+        sightRadius = radius;
+        fieldOfView = null;
+        upToDate = false;
+    }
+
     /**
      * Switch the world that the player is in.
      */
     public void switchWorld() {
         world.getPlayer().switchWorlds();
 
+        // The transition between worlds draws over the layers, so they are calculated afresh.
+        upToDate = false;
+
         if (currentWorld.equals(virtualWorld)) {
             currentWorld = displayWorld;
             alternateWorld = virtualWorld;
@@ -121,153 +204,247 @@ public class Environment implements java.io.Serializable {
     }
 
     /**
-     * Calculate the two environments.
+     * Calculate the two environments. Nothing is done if neither the world nor the player's
+     * position has changed since they were last calculated. Otherwise only those tiles which
+     * were changed, or which came into or went out of view, are calculated again. Both
+     * environments are calculated in full the first time, and after switching worlds.
      */
     public void calcEnvironments() {
-        calcVirtualWorld();
-        calcSeenWorld();
+        Point playerPos = world.getPlayer().getPosition();
+        int playerX = playerPos.getX();
+        int playerY = playerPos.getY();
+
+        if (upToDate && calculatedVersion == world.getVersion()
+                && calculatedX == playerX && calculatedY == playerY) {
+            return;
+        }
+
+        if (upToDate) {
+            // Keep the last visibility to compare against.
+            Visibility temp = previousVisible;
+            previousVisible = visible;
+            visible = temp;
+            calcVisibility(playerX, playerY);
+
+            visible.forEachDifference(previousVisible, this::calcTile);
+            world.forEachChangedTile(this::calcTile);
+        } else {
+            if (visible == null) {
+                visible = new Visibility(worldWidth, worldHeight);
+                previousVisible = new Visibility(worldWidth, worldHeight);
+            }
+            calcVisibility(playerX, playerY);
+            world.trackChanges();
+
+            calcAllTiles();
+            upToDate = true;
+        }
+
+        calculatedVersion = world.getVersion();
+        calculatedX = playerX;
+        calculatedY = playerY;
+    }
+
+    /**
+     * Find every tile visible from the player's tile, reusing the same visibility each time.
+     *
+     * @param playerX : The x-coordinate of the player.
+     * @param playerY : The y-coordinate of the player.
+     */
+    private void calcVisibility(int playerX, int playerY) {
+        visible.clear();
+        getFieldOfView().compute(world, playerX, playerY, visible);
     }
 
     /**
-     * Calculate the world visible from the player's tile. Any new tiles that can be seen
-     * will have their brightness adjusted to level 2. Also, any previously visible tiles
-     * will have their brightness adjusted to level 1.
+     * Calculate a single tile of both environments.
+     *
+     * @param tile : The position of the tile, packed into an int (see Point.pack).
      */
-    private void calcSeenWorld() {
-        TETile currentTile;
-
-        for (int x = 0; x < worldWidth; x += 1) {
-            for (int y = 0; y < worldHeight; y += 1) {
-                currentTile = world.getTile(new Point(x, y));
-
-                // Set all empty tile to empty.
-                if (currentTile.equals(world.getEmpty())) {
-                    displayWorld[x][y] = world.getEmpty();
-
-                // Find all visible tiles and set them to their corresponding world tile.
-                } else if (isVisible(new Point(x, y))) {
-                    if (currentTile.equals(world.getEnergy())) {
-                        displayWorld[x][y] = world.getFloor();
-                    } else {
-                        displayWorld[x][y] = currentTile;
-                    }
-                    seenBrightness[x][y] = 2;
-
-                // The rest of the tiles are not visible. Find all that have been seen and set
-                // them. The rest are empty.
-                } else {
-                    // The tile was seen, but now is not.
-                    if (seenBrightness[x][y] == 2) {
-                        seenBrightness[x][y] = 1;
-                    }
+    private void calcTile(int tile) {
+        calcTile(Point.unpackX(tile), Point.unpackY(tile));
+    }
 
-                    // These tiles have been seen, but are not visible.
-                    if (seenBrightness[x][y] == 1) {
-                        String descrip = currentTile.description();
-                        if (descrip.equals(world.getFloor().description())) {
-                            displayWorld[x][y] = FLOORDARK;
-                        } else if (descrip.equals(world.getTrap().description())) {
-                            displayWorld[x][y] = FLOORDARK;
-                        } else if (descrip.equals(world.getEnergy().description())) {
-                            displayWorld[x][y] = FLOORDARK;
-
-                        } else {
-                            for (int i = 0; i < world.getDecorativeTiles().length; i += 1) {
-                                if (descrip.equals(world.getDecorativeTiles()[i].description())) {
-                                    displayWorld[x][y] = DECORATIVEWALLSDARK[i];
-                                }
-                            }
-                        }
-                    // These tiles have yet to be seen.
-                    } else {
-                        displayWorld[x][y] = world.getEmpty();
+    /**
+     * Calculate every tile of every layer of the environment in one pass. The world and the
+     * layers are stored a row at a time, so each row is copied out, calculated, and copied back.
+     */
+    private void calcAllTiles() {
+        if (layers == null) {
+            buildLayers();
+        }
+        short[] ids = new short[worldWidth];
+        byte[] brightness = new byte[worldWidth];
+        short[][] shown = new short[layers.length][worldWidth];
+
+        for (int y = 0; y < worldHeight; y += 1) {
+            world.getTileGrid().readRow(y, ids, 0);
+            seenBrightness.readRow(y, brightness, 0);
+            for (int i = 0; i < layers.length; i += 1) {
+                layers[i].grid.readRow(y, shown[i], 0);
+            }
+
+            for (int x = 0; x < worldWidth; x += 1) {
+                int id = ids[x];
+                if (id >= emptyIds.length) {
+                    buildLayers();
+                }
+                boolean inView = visible.isVisible(x, y);
+                brightness[x] = (byte) brightness(id, inView, brightness[x]);
+
+                for (int i = 0; i < layers.length; i += 1) {
+                    int tile = layers[i].show(id, inView, brightness[x] == 1);
+                    if (tile != KEEP) {
+                        shown[i][x] = (short) tile;
                     }
                 }
             }
+
+            seenBrightness.writeRow(y, brightness, 0);
+            for (int i = 0; i < layers.length; i += 1) {
+                layers[i].grid.writeRow(y, shown[i], 0);
+            }
         }
     }
 
     /**
-     * Calculate the world visible from the player's tile. Any new tiles that can be seen
-     * will have their brightness adjusted to level 2. Also, any previously visible tiles
-     * will have their brightness adjusted to level 1.
+     * Calculate a single tile of every layer of the environment.
+     *
+     * @param x : The x-coordinate of the tile.
+     * @param y : The y-coordinate of the tile.
      */
-    private void calcVirtualWorld() {
-        TETile currentTile;
-
-        for (int x = 0; x < worldWidth; x += 1) {
-            for (int y = 0; y < worldHeight; y += 1) {
-                currentTile = world.getTile(new Point(x, y));
-
-                // Set all empty tiles to static.
-                if (currentTile.equals(world.getEmpty())) {
-                    //virtualWorld[x][y] = randomStatic();
-                    virtualWorld[x][y] = world.getEmpty();
-
-                // Find all visible tiles and set them to their corresponding digital tiles.
-                } else if (isVisible(new Point(x, y))) {
-                    String currDescrip = currentTile.description();
-                    String playerDescrip = world.getPlayer().getTile().description();
-                    String buddyDescrip = world.getPlayer().getBuddy().getTile().description();
-                    if (currDescrip.equals(world.getFloor().description())) {
-                        virtualWorld[x][y] = randomStatic();
-                    } else if (currDescrip.equals(playerDescrip)) {
-                        virtualWorld[x][y] = PLAYERDIGITAL;
-                    } else if (currDescrip.equals(buddyDescrip)) {
-                        virtualWorld[x][y] = BUDDYDIGITAL;
-                    } else if (currDescrip.equals(world.getTrap().description())) {
-                        virtualWorld[x][y] = FLOORDIGITAL;
-                    } else if (currDescrip.equals(world.getEnergy().description())) {
-                        virtualWorld[x][y] = world.getEnergy();
-                    } else {
-                        virtualWorld[x][y] = WALLDIGITAL;
-                    }
+    private void calcTile(int x, int y) {
+        int id = world.getTileGrid().getId(x, y);
+        if (layers == null || id >= emptyIds.length) {
+            buildLayers();
+        }
 
-                // The rest of the tiles are not seen. Set them to static.
-                } else {
-                    //virtualWorld[x][y] = randomStatic();
-                    virtualWorld[x][y] = world.getEmpty();
-                }
+        boolean inView = visible.isVisible(x, y);
+        int brightness = brightness(id, inView, seenBrightness.get(x, y));
+        seenBrightness.set(x, y, brightness);
+
+        for (Layer layer : layers) {
+            int tile = layer.show(id, inView, brightness == 1);
+            if (tile != KEEP) {
+                layer.grid.setId(x, y, tile);
             }
         }
     }
 
     /**
-     * @return : A random static floor tile for the digital world.
+     * If a tile can be seen, its brightness is adjusted to level 2. If it was visible before,
+     * but is no longer, its brightness is adjusted to level 1. Empty tiles are left as they are.
+     *
+     * @param id : The id of the world's tile.
+     * @param inView : Whether the tile is visible.
+     * @param brightness : The brightness of the tile so far.
+     * @return : The new brightness of the tile.
      */
-    private TETile randomStatic() {
-        int randomTile = world.getRandom().nextInt(5);
-        TETile[] randomStaticFloors = new TETile[]{STATICFLOOR1,
-            STATICFLOOR2, STATICFLOOR3, STATICFLOOR4, STATICFLOOR5};
-
-        return randomStaticFloors[randomTile];
+    private int brightness(int id, boolean inView, int brightness) {
+        if (emptyIds[id]) {
+            return brightness;
+        } else if (inView) {
+            return 2;
+        } else if (brightness == 2) {
+            return 1;
+        }
+        return brightness;
     }
 
     /**
-     * Checks to see if a given tile is visible by player. This is done by constructing a
-     * Bresenham line from the given tile to the player tile. Working along this line, it is
-     * checked whether interior tiles are all floor.
-     *
-     * @param tile : The tile to check whether visible by player.
-     * @return : Whether the tile is visible.
+     * Work out, for every tile in the palette, which tile each layer shows for it, from the
+     * tile's properties (see TileProperties). Called again whenever the world holds a tile newer
+     * than the tables.
      */
-    private boolean isVisible(Point tile) {
-        int x;
-        int y;
+    private void buildLayers() {
+        int size = TilePalette.size();
+        int emptyId = TilePalette.idOf(world.getEmpty());
+        int wallDigitalId = TilePalette.idOf(WALLDIGITAL);
+
+        int[] staticIds = new int[STATICFLOORS.length];
+        for (int i = 0; i < STATICFLOORS.length; i += 1) {
+            staticIds[i] = TilePalette.idOf(STATICFLOORS[i]);
+        }
 
-        Point playerPos = world.getPlayer().getPosition();
-        LinkedList<Point> line = new BresenhamLine(playerPos, tile).plotLine();
-        boolean tileVisible = true;
+        // The virtual layer comes first, so static is drawn in the order it always has been.
+        Random random = world.getCosmeticRandom();
+        Layer virtual = new Layer(virtualWorld, size, emptyId, staticIds, random);
+        Layer seen = new Layer(displayWorld, size, emptyId, staticIds, random);
+        emptyIds = new boolean[size];
+
+        for (int id = 0; id < size; id += 1) {
+            int flags = TileProperties.flags(id);
+            if ((flags & TileProperties.EMPTY) != 0) {
+                emptyIds[id] = true;
+                continue;
+            }
+
+            // Visible tiles are shown in their light form, e.g., energy is hidden as floor.
+            int light = TileProperties.lightForm(id);
+            seen.visibleIds[id] = light == TileProperties.NONE ? id : light;
+
+            // Tiles seen before are shown dark, and any other tile is left as last shown.
+            int dark = TileProperties.darkForm(id);
+            seen.rememberedIds[id] = dark == TileProperties.NONE ? KEEP : dark;
 
-        for (int i = 1; i < line.size() - 1; i += 1) {
-            x = line.get(i).getX();
-            y = line.get(i).getY();
+            // The digital world shows only what is visible, as its digital counterpart.
+            int digital = TileProperties.virtualForm(id);
+            if ((flags & TileProperties.FLOOR) != 0) {
+                virtual.visibleIds[id] = STATIC;
+            } else {
+                virtual.visibleIds[id] = digital == TileProperties.NONE ? wallDigitalId : digital;
+            }
+        }
+
+        layers = new Layer[]{virtual, seen};
+    }
+
+    /**
+     * One layer of the environment, i.e., one view of the world, with a table for each state a
+     * tile can be in: visible, seen before, and never seen. Each table maps the id of a world
+     * tile (see TilePalette) to the id of the tile shown for it, to KEEP to leave the tile shown
+     * as it is, or to STATIC for a random static tile. Empty tiles are always shown empty.
+     */
+    private static class Layer {
+        private final TileGrid grid;
+        private final int[] visibleIds;
+        private final int[] rememberedIds;
+        private final int[] unseenIds;
+        private final int[] staticIds;
+        private final Random random;
+
+        Layer(TileGrid grid, int size, int emptyId, int[] staticIds, Random random) {
+            this.grid = grid;
+            this.visibleIds = new int[size];
+            this.rememberedIds = new int[size];
+            this.unseenIds = new int[size];
+            this.staticIds = staticIds;
+            this.random = random;
+            Arrays.fill(visibleIds, emptyId);
+            Arrays.fill(rememberedIds, emptyId);
+            Arrays.fill(unseenIds, emptyId);
+        }
+
+        /**
+         * @param id : The id of the world's tile.
+         * @param inView : Whether the tile is visible.
+         * @param remembered : Whether the tile is not visible, but was seen before.
+         * @return : The id of the tile to show, or KEEP.
+         */
+        int show(int id, boolean inView, boolean remembered) {
+            int shown;
+            if (inView) {
+                shown = visibleIds[id];
+            } else if (remembered) {
+                shown = rememberedIds[id];
+            } else {
+                shown = unseenIds[id];
+            }
 
-            if (world.getTileArray()[x][y].equals(world.getWall())) {
-                tileVisible = false;
-                break;
+            if (shown == STATIC) {
+                return staticIds[STATICFLOORVARIANTS.sample(random)];
             }
+            return shown;
         }
-        return tileVisible;
     }
 }
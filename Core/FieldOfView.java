@@ -0,0 +1,19 @@
+package byog.Core;
+
+/**
+ * A way of finding which tiles of the world can be seen from a given position. Tiles which
+ * block sight (see World.blocksSight) are themselves visible, but hide whatever lies behind
+ * them.
+ */
+public interface FieldOfView {
+    /**
+     * Mark every tile visible from the given position. The position itself is always visible.
+     * Tiles already marked are left marked, so the caller clears the visibility first.
+     *
+     * @param world : The world looked at.
+     * @param originX : The x-coordinate looked from.
+     * @param originY : The y-coordinate looked from.
+     * @param visible : The visibility to fill in.
+     */
+    void compute(World world, int originX, int originY, Visibility visible);
+}
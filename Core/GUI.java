@@ -11,6 +11,9 @@ import java.awt.Font;
  * the relevant data.
  */
 public class GUI implements java.io.Serializable {
+    /** The font the world's tiles are drawn in, which is also the font of the HUD's text. */
+    static final Font TILE_FONT = new Font("Monospaced", Font.PLAIN, 15);
+
     private HUD hud;
     private TERenderer tileRender;
     private Environment environment;
@@ -38,7 +41,7 @@ public class GUI implements java.io.Serializable {
         this.hudHeight = worldHeight;
 
         // Set all fonts, colors, and margins.
-        this.optionFont = new Font("Monospaced", Font.PLAIN, 15);
+        this.optionFont = TILE_FONT;
         this.titleFont = new Font("Monospaced", Font.BOLD, 16);
         this.boxColor = new Color(18, 48, 59);
         this.textColor = new Color(189, 194, 160);
@@ -75,9 +78,10 @@ public class GUI implements java.io.Serializable {
      * Display the background box for the HUD.
      */
     private void displayHudBox() {
-        double boxCenterX = hudWidth / 2;
+        // The box ends where the world begins, as the world tiles are only drawn where they change.
+        double boxCenterX = (hudWidth - 1) / 2.0;
         double boxCenterY = worldHeight / 2;
-        double halfBoxWidth = hudWidth / 2 + 1;
+        double halfBoxWidth = (hudWidth + 1) / 2.0;
         double halfBoxHeight = worldHeight / 2;
 
         StdDraw.setPenColor(boxColor);
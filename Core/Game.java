@@ -1,16 +1,16 @@
 package byog.Core;
 
+import byog.TileEngine.StdDrawBackend;
 import byog.TileEngine.TERenderer;
 import byog.TileEngine.TETile;
+import byog.TileEngine.TileAtlas;
 import edu.princeton.cs.introcs.StdDraw;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.file.Paths;
 
 public class Game {
-    private TERenderer ter = new TERenderer();
+    private TERenderer ter = new TERenderer(new StdDrawBackend(
+            new TileAtlas(TERenderer.TILE_SIZE, GUI.TILE_FONT)));
     /* Feel free to change the width and height. */
     private static final int WIDTH = 80;
     private static final int HEIGHT = 50;
@@ -297,17 +297,11 @@ public class Game {
     }
 
     /**
-     * Serialize, i.e., save the world.
+     * Serialize, i.e., save the world (see WorldFile).
      */
     private void serializeWorld(Environment environment) {
         try {
-            FileOutputStream file = new FileOutputStream(filename);
-            ObjectOutputStream out = new ObjectOutputStream(file);
-
-            out.writeObject(environment);
-
-            out.close();
-            file.close();
+            WorldFile.save(Paths.get(filename), environment);
         } catch (IOException ex) {
             System.out.println("IOException is caught in serialize.");
             ex.printStackTrace();
@@ -315,27 +309,16 @@ public class Game {
     }
 
     /**
-     * Deserialize, i.e., load the world. If not save file, game terminates with no error.
+     * Deserialize, i.e., load the world (see WorldFile). If not save file, game terminates with
+     * no error.
      *
      * @return : Then environment to load.
      */
     private Environment deserializeWorld() {
-        Environment environmentLoad = null;
-
         try {
-            FileInputStream file = new FileInputStream(filename);
-            ObjectInputStream in = new ObjectInputStream(file);
-
-            environmentLoad = (Environment) in.readObject();
-
-            in.close();
-            file.close();
+            return WorldFile.load(Paths.get(filename));
         } catch (IOException ex) {
             return null;
-        } catch (ClassNotFoundException ex) {
-            System.out.println("ClassNotFoundException is caught.");
-            ex.printStackTrace();
         }
-        return environmentLoad;
     }
 }
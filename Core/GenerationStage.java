@@ -0,0 +1,33 @@
+package byog.Core;
+
+/**
+ * The stages of world generation, in the order in which they are run. Each stage runs exactly
+ * once per world, and the world records how long each one took.
+ *
+ * Each stage draws from its own stream of random numbers, numbered by the stage's position in
+ * this list (see World.getRandom). New stages should be added at the end, so that existing
+ * seeds keep producing the same worlds.
+ */
+public enum GenerationStage {
+    PLACE("Place rooms"),
+    ORDER("Order rooms"),
+    CARVE_ROOMS("Carve rooms"),
+    CARVE_HALLWAYS("Carve hallways"),
+    WALLS("Build walls"),
+    TRAPS("Place traps"),
+    ENERGY("Place energy"),
+    SPAWN("Spawn player");
+
+    private final String description;
+
+    GenerationStage(String description) {
+        this.description = description;
+    }
+
+    /**
+     * @return : A readable name for the stage.
+     */
+    public String description() {
+        return description;
+    }
+}
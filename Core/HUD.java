@@ -1,7 +1,10 @@
 package byog.Core;
 
+import byog.TileEngine.TilePalette;
 import edu.princeton.cs.introcs.StdDraw;
 
+import java.util.Arrays;
+
 /**
  * This class takes care of calculating all relevant information for the game's HUD,
  * which is to be displayed in the GUI class.
@@ -10,6 +13,8 @@ public class HUD implements java.io.Serializable {
     private Environment environment;
     private int hudWidth;
     private int hudHeight;
+    // What hovering over each tile says, by tile ID, worked out the first time it is needed.
+    private transient String[][] hoverTexts;
 
     HUD(Environment env, int hudWidth, int hudHeight) {
         this.environment = env;
@@ -123,7 +128,7 @@ public class HUD implements java.io.Serializable {
         int maxWorldX = environment.getWidth();
         int maxWorldY = environment.getHeight();
         String mouseOverTitle = "MOUSE OVER";
-        String mouseOverMessage = "You can see a";
+        String mouseOverMessage;
         String mouseOver;
 
         double x = StdDraw.mouseX();
@@ -133,53 +138,9 @@ public class HUD implements java.io.Serializable {
         int yPos = (int) y - hudHeight;
 
         if (xPos >= 0 && xPos < maxWorldX && yPos >= 0 && yPos < maxWorldY) {
-            mouseOver = environment.getCurrentWorld()[xPos][yPos].description();
-            if (mouseOver.charAt(0) == 'N') {
-                if (mouseOver.charAt(1) == 'L') {
-                    mouseOver = mouseOver.substring(3, mouseOver.length());
-                } else if (mouseOver.charAt(1) == 'D') {
-                    mouseOverMessage = "You remember seeing";
-                    mouseOver = "a " + mouseOver.substring(3, mouseOver.length());
-                } else if (mouseOver.substring(1, mouseOver.length()).equals("player")) {
-                    mouseOverMessage = "This is you, the";
-                    mouseOver = mouseOver.substring(1, mouseOver.length());
-                } else if (mouseOver.substring(1, mouseOver.length()).equals("zombie")) {
-                    mouseOverMessage = "This is you, the";
-                    mouseOver = mouseOver.substring(1, mouseOver.length());
-                } else if (mouseOver.substring(1, mouseOver.length()).equals("buddy")) {
-                    mouseOverMessage = "This is your";
-                    mouseOver = mouseOver.substring(1, mouseOver.length());
-                } else if (mouseOver.substring(1, mouseOver.length()).equals("trap")) {
-                    mouseOverMessage = "This is a";
-                    mouseOver = mouseOver.substring(1, mouseOver.length());
-                } else {
-                    mouseOverMessage = "This is an";
-                    mouseOver = mouseOver.substring(1, mouseOver.length());
-                }
-            } else if (mouseOver.charAt(0) == 'V') {
-                if (mouseOver.substring(1, mouseOver.length()).equals("player")) {
-                    mouseOverMessage = "This is you, the";
-                    mouseOver = mouseOver.substring(1, mouseOver.length());
-                } else if (mouseOver.substring(1, mouseOver.length()).equals("virtual zombie")) {
-                    mouseOverMessage = "This is you, the";
-                    mouseOver = mouseOver.substring(1, mouseOver.length());
-                } else if (mouseOver.substring(1, mouseOver.length()).equals("buddy")) {
-                    mouseOverMessage = "This is your";
-                    mouseOver = mouseOver.substring(1, mouseOver.length());
-                } else if (mouseOver.substring(1, mouseOver.length()).equals("wall tile")) {
-                    mouseOverMessage = "You can see a";
-                    mouseOver = mouseOver.substring(1, mouseOver.length());
-                } else if (mouseOver.substring(2, mouseOver.length()).equals("static")) {
-                    mouseOverMessage = "You can see a";
-                    mouseOver = "floor tile";
-                } else if (mouseOver.substring(1, mouseOver.length()).equals("energy")) {
-                    mouseOverMessage = "This is a resource,";
-                    mouseOver = mouseOver.substring(1, mouseOver.length());
-                } else {
-                    mouseOverMessage = "This is";
-                    mouseOver = mouseOver.substring(2, mouseOver.length());
-                }
-            }
+            String[] hover = hoverOf(environment.getCurrentWorld().getId(xPos, yPos));
+            mouseOverMessage = hover[0];
+            mouseOver = hover[1];
         } else if (xPos > -hudWidth && yPos > -hudHeight) {
             mouseOverMessage = "This is the";
             mouseOver = "HUD";
@@ -191,6 +152,76 @@ public class HUD implements java.io.Serializable {
         return new String[]{mouseOverTitle, mouseOverMessage, mouseOver + "."};
     }
 
+    /**
+     * Work out what the mouse hovering over a tile says about it, from the tile's description.
+     * This is done once per tile ID, and remembered.
+     *
+     * @param id : The ID of the tile hovered over.
+     * @return : The message and what it is about, e.g., "You can see a" and "floor tile".
+     */
+    private String[] hoverOf(int id) {
+        if (hoverTexts == null) {
+            hoverTexts = new String[TilePalette.size()][];
+        } else if (id >= hoverTexts.length) {
+            hoverTexts = Arrays.copyOf(hoverTexts, TilePalette.size());
+        }
+        if (hoverTexts[id] != null) {
+            return hoverTexts[id];
+        }
+
+        String mouseOverMessage = "You can see a";
+        String mouseOver = TilePalette.tileOf(id).description();
+        if (mouseOver.charAt(0) == 'N') {
+            if (mouseOver.charAt(1) == 'L') {
+                mouseOver = mouseOver.substring(3, mouseOver.length());
+            } else if (mouseOver.charAt(1) == 'D') {
+                mouseOverMessage = "You remember seeing";
+                mouseOver = "a " + mouseOver.substring(3, mouseOver.length());
+            } else if (mouseOver.substring(1, mouseOver.length()).equals("player")) {
+                mouseOverMessage = "This is you, the";
+                mouseOver = mouseOver.substring(1, mouseOver.length());
+            } else if (mouseOver.substring(1, mouseOver.length()).equals("zombie")) {
+                mouseOverMessage = "This is you, the";
+                mouseOver = mouseOver.substring(1, mouseOver.length());
+            } else if (mouseOver.substring(1, mouseOver.length()).equals("buddy")) {
+                mouseOverMessage = "This is your";
+                mouseOver = mouseOver.substring(1, mouseOver.length());
+            } else if (mouseOver.substring(1, mouseOver.length()).equals("trap")) {
+                mouseOverMessage = "This is a";
+                mouseOver = mouseOver.substring(1, mouseOver.length());
+            } else {
+                mouseOverMessage = "This is an";
+                mouseOver = mouseOver.substring(1, mouseOver.length());
+            }
+        } else if (mouseOver.charAt(0) == 'V') {
+            if (mouseOver.substring(1, mouseOver.length()).equals("player")) {
+                mouseOverMessage = "This is you, the";
+                mouseOver = mouseOver.substring(1, mouseOver.length());
+            } else if (mouseOver.substring(1, mouseOver.length()).equals("virtual zombie")) {
+                mouseOverMessage = "This is you, the";
+                mouseOver = mouseOver.substring(1, mouseOver.length());
+            } else if (mouseOver.substring(1, mouseOver.length()).equals("buddy")) {
+                mouseOverMessage = "This is your";
+                mouseOver = mouseOver.substring(1, mouseOver.length());
+            } else if (mouseOver.substring(1, mouseOver.length()).equals("wall tile")) {
+                mouseOverMessage = "You can see a";
+                mouseOver = mouseOver.substring(1, mouseOver.length());
+            } else if (mouseOver.substring(2, mouseOver.length()).equals("static")) {
+                mouseOverMessage = "You can see a";
+                mouseOver = "floor tile";
+            } else if (mouseOver.substring(1, mouseOver.length()).equals("energy")) {
+                mouseOverMessage = "This is a resource,";
+                mouseOver = mouseOver.substring(1, mouseOver.length());
+            } else {
+                mouseOverMessage = "This is";
+                mouseOver = mouseOver.substring(2, mouseOver.length());
+            }
+        }
+
+        hoverTexts[id] = new String[]{mouseOverMessage, mouseOver};
+        return hoverTexts[id];
+    }
+
     /**
      * @return : Instructions for the game.
      */
@@ -1,73 +1,110 @@
 package byog.Core;
 
-import java.util.LinkedList;
+import byog.TileEngine.TETile;
+import byog.TileEngine.TileGrid;
 import java.util.Random;
+import java.util.function.IntConsumer;
 
 /**
- * Class for constructing a linked list representing an individual hallway.
+ * Class representing an individual hallway. A hallway is made of two straight segments, one
+ * vertical and one horizontal, meeting at a corner. Only the segments are stored; their tiles
+ * are visited in place (see forEachTile).
  */
 public class Hallway implements java.io.Serializable {
-    private LinkedList<Point> hallway;
     private Point centerA;
     private Point centerB;
-    private Random random;
+    private int verticalX;
+    private int horizontalY;
+    private boolean verticalFirst;
 
     Hallway(Point centerA, Point centerB) {
-        this.hallway = new LinkedList<>();
         this.centerA = centerA;
         this.centerB = centerB;
-        this.random = new Random(1086);
 
-        makeHallway();
+        makeHallway(new Random(1086));
     }
 
     /**
      * Make a hallway connecting centerA to centerB. Randomly, this is done by either
      * first connecting a vertical hallway to a horizontal, or by first connecting
      * a horizontal hallway to a vertical.
+     *
+     * @param random : The random number generator choosing which is done.
      */
-    private void makeHallway() {
-        if (random.nextInt(2) == 1) {
-            makeVertical(centerA.getX());
-            makeHorizontal(centerB.getY());
+    private void makeHallway(Random random) {
+        verticalFirst = random.nextInt(2) == 1;
+        if (verticalFirst) {
+            verticalX = centerA.getX();
+            horizontalY = centerB.getY();
         } else {
-            makeHorizontal(centerA.getY());
-            makeVertical(centerB.getX());
+            horizontalY = centerA.getY();
+            verticalX = centerB.getX();
         }
     }
 
+    private int minX() {
+        return Math.min(centerA.getX(), centerB.getX());
+    }
+
+    private int maxX() {
+        return Math.max(centerA.getX(), centerB.getX());
+    }
+
+    private int minY() {
+        return Math.min(centerA.getY(), centerB.getY());
+    }
+
+    private int maxY() {
+        return Math.max(centerA.getY(), centerB.getY());
+    }
+
     /**
-     * Constructs a vertical hallway going from the minimum vertical height to the
-     * maximum vertical height of the two center points.
-     *
-     * @param x : The x-coordinate along which the vertical hallway is built.
+     * @param x : The x-coordinate.
+     * @param y : The y-coordinate.
+     * @return : Whether the given position is a tile of this hallway.
      */
-    private void makeVertical(int x) {
-        int minY = Math.min(centerA.getY(), centerB.getY());
-        int maxY = Math.max(centerA.getY(), centerB.getY());
-        for (int y = minY; y <= maxY; y += 1) {
-            hallway.add(new Point(x, y));
-        }
+    public boolean contains(int x, int y) {
+        return (x == verticalX && y >= minY() && y <= maxY())
+                || (y == horizontalY && x >= minX() && x <= maxX());
     }
 
     /**
-     * Constructs a horizontal hallway going from the minimum horizontal length to the
-     * maximum horizontal length of the two center points.
+     * Visit every tile of the hallway, segment by segment in the order they were made. Each tile
+     * is given to the action packed into an int (see Point.pack). The corner is part of both
+     * segments, so it is visited twice.
      *
-     * @param y : The y-coordinate along which the horizontal hallway is built.
+     * @param action : The action taking each packed tile.
      */
-    private void makeHorizontal(int y) {
-        int minX = Math.min(centerA.getX(), centerB.getX());
-        int maxX = Math.max(centerA.getX(), centerB.getX());
-        for (int x = minX; x <= maxX; x += 1) {
-            hallway.add(new Point(x, y));
+    public void forEachTile(IntConsumer action) {
+        if (verticalFirst) {
+            forEachVertical(action);
+            forEachHorizontal(action);
+        } else {
+            forEachHorizontal(action);
+            forEachVertical(action);
+        }
+    }
+
+    private void forEachVertical(IntConsumer action) {
+        for (int y = minY(); y <= maxY(); y += 1) {
+            action.accept(Point.pack(verticalX, y));
+        }
+    }
+
+    private void forEachHorizontal(IntConsumer action) {
+        for (int x = minX(); x <= maxX(); x += 1) {
+            action.accept(Point.pack(x, horizontalY));
         }
     }
 
     /**
-     * @return : The linked list containing the hallway tiles.
+     * Set every tile of the hallway in the grid to the given tile.
+     *
+     * @param grid : The grid to fill.
+     * @param material : The tile to fill with.
      */
-    public LinkedList<Point> getHallway() {
-        return hallway;
+    public void fill(TileGrid grid, TETile material) {
+        grid.fill(verticalX, minY(), verticalX + 1, maxY() + 1, material);
+        grid.fill(minX(), horizontalY, maxX() + 1, horizontalY + 1, material);
     }
 }
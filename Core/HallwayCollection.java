@@ -38,3 +38,4 @@ public class HallwayCollection implements java.io.Serializable {
     public Hallway get(int index) {
         return hallways.get(index);
     }
+}
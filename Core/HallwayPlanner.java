@@ -0,0 +1,324 @@
+package byog.Core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+
+/**
+ * Plans which rooms are joined by hallways.
+ *
+ * The default plan is a Euclidean minimum spanning tree over the room centers, so every room is
+ * reachable while keeping the total hallway length to a minimum. It is found with Boruvka's
+ * algorithm: every round, each group of connected rooms is joined to its nearest room outside
+ * of the group, which at least halves the number of groups. The nearest room is found with a
+ * KD-tree over the room centers, and whole subtrees lying within the querying group are skipped.
+ * This is O(n log n) per round, rather than the O(n^2) of comparing every pair of rooms.
+ *
+ * A few extra hallways can be added on top of the tree, joining rooms to their second nearest
+ * neighbor, so that the cave has some loops rather than only dead ends.
+ *
+ * The legacy plan instead chains each room to the next in the room collection's order.
+ *
+ * Sources:
+ *   @Source : https://en.wikipedia.org/wiki/Bor%C5%AFvka%27s_algorithm
+ *   @Source : https://en.wikipedia.org/wiki/K-d_tree
+ */
+public class HallwayPlanner {
+    private final RoomCollection rooms;
+    private final int count;
+    private final int[] centerX;
+    private final int[] centerY;
+    private final int[] tree;
+    private final int[] treeComponent;
+    private final int[] component;
+    private final int[] parent;
+
+    private int bestRoom;
+    private long bestDistance;
+
+    private HallwayPlanner(RoomCollection rooms) {
+        this.rooms = rooms;
+        this.count = rooms.size();
+        this.centerX = new int[count];
+        this.centerY = new int[count];
+        this.tree = new int[count];
+        this.treeComponent = new int[count];
+        this.component = new int[count];
+        this.parent = new int[count];
+
+        for (int i = 0; i < count; i += 1) {
+            centerX[i] = rooms.get(i).getCenter().getX();
+            centerY[i] = rooms.get(i).getCenter().getY();
+            tree[i] = i;
+            parent[i] = i;
+        }
+        buildTree(0, count, 0);
+    }
+
+    /**
+     * Chain each room to the next room in the collection.
+     *
+     * @param rooms : The rooms to be joined, in order.
+     * @return : The planned hallways.
+     */
+    public static HallwayCollection chain(RoomCollection rooms) {
+        HallwayCollection hallways = new HallwayCollection();
+
+        for (int room = 0; room < rooms.size() - 1; room += 1) {
+            hallways.add(new Hallway(rooms.get(room).getCenter(),
+                    rooms.get(room + 1).getCenter()));
+        }
+        return hallways;
+    }
+
+    /**
+     * Join the rooms along a minimum spanning tree of their centers, plus some extra hallways.
+     *
+     * @param rooms : The rooms to be joined.
+     * @param extraHallways : The number of hallways to add beyond the spanning tree.
+     * @return : The planned hallways.
+     */
+    public static HallwayCollection spanningTree(RoomCollection rooms, int extraHallways) {
+        HallwayCollection hallways = new HallwayCollection();
+        if (rooms.size() < 2) {
+            return hallways;
+        }
+
+        HallwayPlanner planner = new HallwayPlanner(rooms);
+        ArrayList<long[]> treeEdges = planner.minimumSpanningTree();
+        for (long[] edge : treeEdges) {
+            planner.addHallway(hallways, edge);
+        }
+
+        if (extraHallways > 0) {
+            for (long[] edge : planner.loopEdges(treeEdges, extraHallways)) {
+                planner.addHallway(hallways, edge);
+            }
+        }
+        return hallways;
+    }
+
+    /**
+     * Find the minimum spanning tree of the room centers with Boruvka's algorithm. Edges are
+     * stored as {distance squared, room a, room b}, and ties in distance are broken by the rooms'
+     * indices, so that the rounds can never join groups into a cycle.
+     *
+     * @return : The edges of the tree.
+     */
+    private ArrayList<long[]> minimumSpanningTree() {
+        ArrayList<long[]> edges = new ArrayList<>();
+        long[][] cheapest = new long[count][];
+        int components = count;
+
+        while (components > 1) {
+            for (int i = 0; i < count; i += 1) {
+                component[i] = find(i);
+            }
+            labelTree(0, count);
+            Arrays.fill(cheapest, null);
+
+            // Find the nearest room outside of each room's group, keeping the shortest per group.
+            for (int room = 0; room < count; room += 1) {
+                nearest(room, component[room], -1);
+                long[] edge = edge(room, bestRoom, bestDistance);
+                int group = component[room];
+
+                if (cheapest[group] == null || compareEdges(edge, cheapest[group]) < 0) {
+                    cheapest[group] = edge;
+                }
+            }
+
+            for (int group = 0; group < count; group += 1) {
+                long[] edge = cheapest[group];
+                if (edge == null) {
+                    continue;
+                }
+
+                int rootA = find((int) edge[1]);
+                int rootB = find((int) edge[2]);
+                if (rootA != rootB) {
+                    parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+                    edges.add(edge);
+                    components -= 1;
+                }
+            }
+        }
+        return edges;
+    }
+
+    /**
+     * Find extra edges to add to the spanning tree. Each room's second nearest neighbor is a
+     * candidate, and the shortest candidates which are not already edges are used.
+     *
+     * @param treeEdges : The edges of the spanning tree.
+     * @param wanted : The number of extra edges wanted.
+     * @return : The extra edges, shortest first.
+     */
+    private ArrayList<long[]> loopEdges(ArrayList<long[]> treeEdges, int wanted) {
+        // Give every room its own group, so that the queries below consider every other room.
+        for (int i = 0; i < count; i += 1) {
+            component[i] = i;
+        }
+        labelTree(0, count);
+
+        ArrayList<long[]> candidates = new ArrayList<>();
+        for (int room = 0; room < count; room += 1) {
+            nearest(room, room, -1);
+            int first = bestRoom;
+            nearest(room, room, first);
+
+            if (bestRoom >= 0) {
+                candidates.add(edge(room, bestRoom, bestDistance));
+            }
+        }
+        candidates.sort(HallwayPlanner::compareEdges);
+
+        HashSet<Long> used = new HashSet<>();
+        for (long[] edge : treeEdges) {
+            used.add(edge[1] * count + edge[2]);
+        }
+
+        ArrayList<long[]> chosen = new ArrayList<>();
+        for (long[] candidate : candidates) {
+            if (chosen.size() >= wanted) {
+                break;
+            }
+            if (used.add(candidate[1] * count + candidate[2])) {
+                chosen.add(candidate);
+            }
+        }
+        return chosen;
+    }
+
+    /**
+     * Add the hallway for the given edge to the collection.
+     */
+    private void addHallway(HallwayCollection hallways, long[] edge) {
+        hallways.add(new Hallway(rooms.get((int) edge[1]).getCenter(),
+                rooms.get((int) edge[2]).getCenter()));
+    }
+
+    /**
+     * Arrange tree[lo, hi) into a KD-tree, splitting on x and y alternately. The room at the
+     * middle of each range is the root of that range's subtree.
+     */
+    private void buildTree(int lo, int hi, int depth) {
+        if (hi - lo <= 1) {
+            return;
+        }
+
+        int[] axis = depth % 2 == 0 ? centerX : centerY;
+        Integer[] range = new Integer[hi - lo];
+        for (int i = lo; i < hi; i += 1) {
+            range[i - lo] = tree[i];
+        }
+        Arrays.sort(range, Comparator.comparingInt((Integer room) -> axis[room])
+                .thenComparingInt(room -> room));
+        for (int i = lo; i < hi; i += 1) {
+            tree[i] = range[i - lo];
+        }
+
+        int mid = (lo + hi) >>> 1;
+        buildTree(lo, mid, depth + 1);
+        buildTree(mid + 1, hi, depth + 1);
+    }
+
+    /**
+     * Record, for the subtree of tree[lo, hi), the group all of its rooms belong to, or -1 if
+     * they belong to more than one.
+     *
+     * @return : The group of the subtree.
+     */
+    private int labelTree(int lo, int hi) {
+        if (lo >= hi) {
+            return -2;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        int label = component[tree[mid]];
+        int left = labelTree(lo, mid);
+        int right = labelTree(mid + 1, hi);
+
+        if ((left != -2 && left != label) || (right != -2 && right != label)) {
+            label = -1;
+        }
+        treeComponent[mid] = label;
+        return label;
+    }
+
+    /**
+     * Find the room nearest the given room which is neither in the given group nor the given
+     * excluded room. The result is left in bestRoom and bestDistance.
+     */
+    private void nearest(int room, int group, int excluded) {
+        bestRoom = -1;
+        bestDistance = Long.MAX_VALUE;
+        search(0, count, 0, room, group, excluded);
+    }
+
+    private void search(int lo, int hi, int depth, int room, int group, int excluded) {
+        if (lo >= hi) {
+            return;
+        }
+
+        int mid = (lo + hi) >>> 1;
+        if (treeComponent[mid] == group) {
+            return;
+        }
+
+        int candidate = tree[mid];
+        if (component[candidate] != group && candidate != excluded) {
+            long distance = distanceSquared(room, candidate);
+            if (distance < bestDistance
+                    || (distance == bestDistance && candidate < bestRoom)) {
+                bestDistance = distance;
+                bestRoom = candidate;
+            }
+        }
+
+        long delta = depth % 2 == 0 ? centerX[room] - centerX[candidate]
+                : centerY[room] - centerY[candidate];
+        if (delta < 0) {
+            search(lo, mid, depth + 1, room, group, excluded);
+            if (delta * delta <= bestDistance) {
+                search(mid + 1, hi, depth + 1, room, group, excluded);
+            }
+        } else {
+            search(mid + 1, hi, depth + 1, room, group, excluded);
+            if (delta * delta <= bestDistance) {
+                search(lo, mid, depth + 1, room, group, excluded);
+            }
+        }
+    }
+
+    /**
+     * @return : The root of the given room's group.
+     */
+    private int find(int room) {
+        while (parent[room] != room) {
+            parent[room] = parent[parent[room]];
+            room = parent[room];
+        }
+        return room;
+    }
+
+    private long distanceSquared(int a, int b) {
+        long deltaX = centerX[a] - centerX[b];
+        long deltaY = centerY[a] - centerY[b];
+        return deltaX * deltaX + deltaY * deltaY;
+    }
+
+    private static long[] edge(int a, int b, long distance) {
+        return new long[]{distance, Math.min(a, b), Math.max(a, b)};
+    }
+
+    private static int compareEdges(long[] a, long[] b) {
+        for (int i = 0; i < 3; i += 1) {
+            if (a[i] != b[i]) {
+                return Long.compare(a[i], b[i]);
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,38 @@
+package byog.Core;
+
+/**
+ * The field of view the game has always used: a tile is visible when no tile strictly between
+ * it and the origin on the Bresenham line joining them blocks sight. Every tile of the world is
+ * checked with a line of its own, so this takes time proportional to the area of the world
+ * times the length of its lines. It is kept so that legacy worlds look as they always have.
+ */
+public class LineOfSight implements FieldOfView, java.io.Serializable {
+    @Override
+    public void compute(World world, int originX, int originY, Visibility visible) {
+        BresenhamLine line = new BresenhamLine();
+
+        for (int x = 0; x < visible.getWidth(); x += 1) {
+            for (int y = 0; y < visible.getHeight(); y += 1) {
+                if (isClear(world, line.reset(originX, originY, x, y))) {
+                    visible.set(x, y);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param world : The world looked at.
+     * @param line : The line from the tile looked from to the tile looked at.
+     * @return : Whether no tile between the two ends of the line blocks sight.
+     */
+    private boolean isClear(World world, BresenhamLine line) {
+        // Skip the first tile, and stop before the last.
+        line.advance();
+        while (line.advance() && line.hasNext()) {
+            if (world.blocksSight(line.getX(), line.getY())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -9,7 +9,6 @@ import byog.TileEngine.Tileset;
  */
 public class Player implements java.io.Serializable {
     private World world;
-    private TETile[][] worldTiles;
     private TETile playerTile;
     private TETile playerAbove;
     private Point position;
@@ -20,9 +19,8 @@ public class Player implements java.io.Serializable {
     public Player(Point position, World world) {
         this.world = world;
         this.position = position;
-        this.worldTiles = world.getTileArray();
         this.playerTile = Tileset.PLAYER;
-        this.playerAbove = worldTiles[position.getX()][position.getY()];
+        this.playerAbove = world.getTile(position);
         this.buddy = new Buddy(new Point(position.getX() + 1, position.getY()), world);
         this.lives = 5;
         this.digital = false;
@@ -72,32 +70,28 @@ public class Player implements java.io.Serializable {
      * @return : Whether the player can move up.
      */
     public boolean canMoveUp() {
-        Point upTile = new Point(position.getX(), position.getY() + 1);
-        return !world.getTile(upTile).equals(world.getWall());
+        return world.isPassable(position.getX(), position.getY() + 1);
     }
 
     /**
      * @return : Whether the player can move left.
      */
     public boolean canMoveLeft() {
-        Point leftTile = new Point(position.getX() - 1, position.getY());
-        return !world.getTile(leftTile).equals(world.getWall());
+        return world.isPassable(position.getX() - 1, position.getY());
     }
 
     /**
      * @return : Whether the player can move down.
      */
     public boolean canMoveDown() {
-        Point downTile = new Point(position.getX(), position.getY() - 1);
-        return !world.getTile(downTile).equals(world.getWall());
+        return world.isPassable(position.getX(), position.getY() - 1);
     }
 
     /**
      * @return : Whether the player can move right.
      */
     public boolean canMoveRight() {
-        Point rightTile = new Point(position.getX() + 1, position.getY());
-        return !world.getTile(rightTile).equals(world.getWall());
+        return world.isPassable(position.getX() + 1, position.getY());
     }
 
     /**
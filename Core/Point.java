@@ -58,4 +58,32 @@ public class Point implements java.io.Serializable {
     public void setY(int y) {
         this.y = y;
     }
+
+    /**
+     * Pack the given coordinates into a single int, so that tiles can be passed around without
+     * creating a Point for each. Both coordinates must be between 0 and 65535.
+     *
+     * @param x : The x-coordinate.
+     * @param y : The y-coordinate.
+     * @return : The packed coordinates.
+     */
+    public static int pack(int x, int y) {
+        return (x << 16) | y;
+    }
+
+    /**
+     * @param packed : Coordinates packed by pack.
+     * @return : The x-coordinate.
+     */
+    public static int unpackX(int packed) {
+        return packed >>> 16;
+    }
+
+    /**
+     * @param packed : Coordinates packed by pack.
+     * @return : The y-coordinate.
+     */
+    public static int unpackY(int packed) {
+        return packed & 0xFFFF;
+    }
 }
@@ -0,0 +1,195 @@
+package byog.Core;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * A set of positions in the world, such as the positions of every trap. Positions are stored
+ * packed into ints (see Point.pack) in an open-addressing hash table with linear probing, so
+ * adding, removing and checking a position are O(1) and create no objects.
+ *
+ * Removal shifts later entries of the same probe run back into the freed slot, rather than
+ * leaving a marker behind, so the table never fills up with removed entries.
+ *
+ * Free slots are marked with -1, which is also what (65535, 65535) packs to, so coordinates
+ * must be between 0 and 65534.
+ */
+public class PositionSet implements java.io.Serializable {
+    private static final int FREE = -1;
+    private static final int MAX_COORDINATE = 0xFFFE;
+    private static final int MIN_CAPACITY = 16;
+
+    private int[] table;
+    private int size;
+
+    PositionSet() {
+        table = new int[MIN_CAPACITY];
+        Arrays.fill(table, FREE);
+        size = 0;
+    }
+
+    /**
+     * @return : The number of positions in the set.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return : Whether the set has no positions.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @param x : The x-coordinate.
+     * @param y : The y-coordinate.
+     * @return : Whether the given position is in the set.
+     */
+    public boolean contains(int x, int y) {
+        return table[find(Point.pack(x, y))] != FREE;
+    }
+
+    /**
+     * @param position : The position.
+     * @return : Whether the given position is in the set.
+     */
+    public boolean contains(Point position) {
+        return contains(position.getX(), position.getY());
+    }
+
+    /**
+     * Add the given position to the set.
+     *
+     * @param x : The x-coordinate.
+     * @param y : The y-coordinate.
+     * @return : Whether the position was not already in the set.
+     */
+    public boolean add(int x, int y) {
+        if (x < 0 || x > MAX_COORDINATE || y < 0 || y > MAX_COORDINATE) {
+            throw new IllegalArgumentException("position out of range: x=" + x + ", y=" + y);
+        }
+        int key = Point.pack(x, y);
+        int slot = find(key);
+
+        if (table[slot] != FREE) {
+            return false;
+        }
+        table[slot] = key;
+        size += 1;
+
+        // Keep the table at most half full, so probe runs stay short.
+        if (size * 2 > table.length) {
+            resize(table.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Add the given position to the set.
+     *
+     * @param position : The position.
+     * @return : Whether the position was not already in the set.
+     */
+    public boolean add(Point position) {
+        return add(position.getX(), position.getY());
+    }
+
+    /**
+     * Remove the given position from the set.
+     *
+     * @param x : The x-coordinate.
+     * @param y : The y-coordinate.
+     * @return : Whether the position was in the set.
+     */
+    public boolean remove(int x, int y) {
+        int slot = find(Point.pack(x, y));
+        if (table[slot] == FREE) {
+            return false;
+        }
+
+        // Move back any entry further along the run which could have used the freed slot.
+        int mask = table.length - 1;
+        int next = (slot + 1) & mask;
+        while (table[next] != FREE) {
+            int home = home(table[next]);
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                table[slot] = table[next];
+                slot = next;
+            }
+            next = (next + 1) & mask;
+        }
+        table[slot] = FREE;
+        size -= 1;
+        return true;
+    }
+
+    /**
+     * Remove the given position from the set.
+     *
+     * @param position : The position.
+     * @return : Whether the position was in the set.
+     */
+    public boolean remove(Point position) {
+        return remove(position.getX(), position.getY());
+    }
+
+    /**
+     * Remove every position from the set.
+     */
+    public void clear() {
+        if (table.length > MIN_CAPACITY) {
+            table = new int[MIN_CAPACITY];
+        }
+        Arrays.fill(table, FREE);
+        size = 0;
+    }
+
+    /**
+     * Visit every position in the set, in no particular order. Each position is given to the
+     * action packed into an int (see Point.pack). The set must not be changed while visiting.
+     *
+     * @param action : The action taking each packed position.
+     */
+    public void forEach(IntConsumer action) {
+        for (int key : table) {
+            if (key != FREE) {
+                action.accept(key);
+            }
+        }
+    }
+
+    /**
+     * @return : The slot holding the given key, or the free slot where it would go.
+     */
+    private int find(int key) {
+        int mask = table.length - 1;
+        int slot = home(key);
+
+        while (table[slot] != FREE && table[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * @return : The slot at which the probe run for the given key starts.
+     */
+    private int home(int key) {
+        int hash = key * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & (table.length - 1);
+    }
+
+    private void resize(int capacity) {
+        int[] old = table;
+        table = new int[capacity];
+        Arrays.fill(table, FREE);
+
+        for (int key : old) {
+            if (key != FREE) {
+                table[find(key)] = key;
+            }
+        }
+    }
+}
@@ -9,10 +9,41 @@ import java.util.Random;
  * other randomness related stuff you might want to do. Feel free to
  * modify this file.
  * <p>
+ * Discrete distributions sampled many times should be built once with
+ * {@code sampler}, rather than passed to {@code discrete} on every draw.
+ * <p>
  * Adapted from https://introcs.cs.princeton.edu/java/22library/StdRandom.java.html
 *
  */
 public class RandomUtils {
+    /** The odd constant closest to 2^64 divided by the golden ratio, used to spread out seeds. */
+    public static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    /**
+     * Scrambles the bits of the given value (the SplitMix64 finalizer), so that nearby values
+     * give unrelated results.
+     *
+     * @param z the value to scramble
+     * @return the scrambled value
+     */
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Derives the seed of a numbered stream of random numbers from a parent seed. Every
+     * (seed, stream) pair gives its own unrelated seed, and the same pair always gives the same
+     * seed, so streams can be handed out to independent users of randomness and reproduced.
+     *
+     * @param seed the parent seed
+     * @param stream the stream number
+     * @return the seed of the stream
+     */
+    public static long deriveSeed(long seed, long stream) {
+        return mix(mix(seed) + GOLDEN_GAMMA * (stream + 1));
+    }
 
     /**
      * Returns a random real number uniformly in [0, 1).
@@ -182,6 +213,32 @@ public class RandomUtils {
         return (int) Math.ceil(Math.log(uniform(random)) / Math.log(1.0 - p));
     }
 
+    /**
+     * Returns the number of failures before the first success in a run of
+     * independent Bernoulli trials with success probability p. Skipping
+     * ahead by this many trials gives the same distribution of successes as
+     * running every trial, with a single draw per success.
+     *
+     * @param p the success probability of each trial
+     * @return the number of failed trials before the next success; or
+     * {@code Long.MAX_VALUE} if {@code p} is 0.0
+     * @throws IllegalArgumentException unless {@code p >= 0.0} and {@code p <= 1.0}
+     */
+    public static long geometricSkip(Random random, double p) {
+        if (!(p >= 0.0 && p <= 1.0)) {
+            throw new IllegalArgumentException("probability p must be between 0.0 and 1.0: " + p);
+        }
+        if (p == 0.0) {
+            return Long.MAX_VALUE;
+        }
+        if (p == 1.0) {
+            return 0;
+        }
+        // 1 - uniform is in (0, 1], so the logarithm is finite
+        double skip = Math.floor(Math.log(1.0 - uniform(random)) / Math.log1p(-p));
+        return skip >= Long.MAX_VALUE ? Long.MAX_VALUE : (long) skip;
+    }
+
     /**
      * Returns a random integer from a Poisson distribution with mean &lambda;.
      *
@@ -329,6 +386,155 @@ public class RandomUtils {
         return -1;
     }
 
+    /**
+     * Returns a sampler for the specified discrete distribution. The
+     * probabilities are checked once, when the sampler is built, after which
+     * every sample takes constant time.
+     *
+     * @param probabilities the probability of occurrence of each integer
+     * @return a sampler returning {@code i} with probability {@code probabilities[i]}
+     * @throws IllegalArgumentException if {@code probabilities} is {@code null} or empty
+     * @throws IllegalArgumentException if sum of array entries is not (very nearly) equal to 1.0
+     * @throws IllegalArgumentException unless {@code probabilities[i] >= 0.0} for each index i
+     */
+    public static DiscreteSampler sampler(double[] probabilities) {
+        if (probabilities == null || probabilities.length == 0) {
+            throw new IllegalArgumentException("argument array is null or empty");
+        }
+        double eps = 1E-14;
+        double sum = 0.0;
+        for (int i = 0; i < probabilities.length; i++) {
+            if (!(probabilities[i] >= 0.0)) {
+                throw new IllegalArgumentException("array entry " + i + " must be nonnegative: "
+                                                   + probabilities[i]);
+            }
+            sum += probabilities[i];
+        }
+        if (sum > 1.0 + eps || sum < 1.0 - eps) {
+            throw new IllegalArgumentException("sum of array entries does not approximately "
+                                               + "equal 1.0: " + sum);
+        }
+        return new DiscreteSampler(probabilities, sum);
+    }
+
+    /**
+     * Returns a sampler for the specified discrete distribution. The
+     * frequencies are checked once, when the sampler is built, after which
+     * every sample takes constant time.
+     *
+     * @param frequencies the frequency of occurrence of each integer
+     * @return a sampler returning i with probability proportional to frequencies[i]
+     * @throws IllegalArgumentException if frequencies is null or empty
+     * @throws IllegalArgumentException if all array entries are 0
+     * @throws IllegalArgumentException if frequencies[i] is negative for any index i
+     */
+    public static DiscreteSampler sampler(int[] frequencies) {
+        if (frequencies == null || frequencies.length == 0) {
+            throw new IllegalArgumentException("argument array is null or empty");
+        }
+        long sum = 0;
+        double[] weights = new double[frequencies.length];
+        for (int i = 0; i < frequencies.length; i++) {
+            if (frequencies[i] < 0) {
+                throw new IllegalArgumentException("array entry " + i + " must be nonnegative: "
+                                                   + frequencies[i]);
+            }
+            sum += frequencies[i];
+            weights[i] = frequencies[i];
+        }
+        if (sum == 0) {
+            throw new IllegalArgumentException("at least one array entry must be positive");
+        }
+        return new DiscreteSampler(weights, sum);
+    }
+
+    /**
+     * A prebuilt discrete distribution, sampled in constant time with
+     * Vose's alias method. Each of the n outcomes is given a column of equal
+     * width. A column holds part of the probability of its own outcome, and the
+     * rest of the column is given over to a single other outcome (its alias).
+     * A sample picks a column uniformly, then the column's own outcome or its
+     * alias. Columns lying wholly to their own outcome need no second draw, so
+     * sampling a uniform distribution draws exactly as {@code nextInt(n)} does.
+     * <p>
+     * Source: http://www.keithschwarz.com/darts-dice-coins/
+     */
+    public static final class DiscreteSampler implements java.io.Serializable {
+        private final double[] probability;
+        private final int[] alias;
+
+        private DiscreteSampler(double[] weights, double sum) {
+            int n = weights.length;
+            probability = new double[n];
+            alias = new int[n];
+
+            // scale so that the average column is exactly 1.0
+            double[] scaled = new double[n];
+            int[] small = new int[n];
+            int[] large = new int[n];
+            int smallCount = 0;
+            int largeCount = 0;
+            for (int i = 0; i < n; i++) {
+                scaled[i] = weights[i] * n / sum;
+                if (scaled[i] < 1.0) {
+                    small[smallCount++] = i;
+                } else {
+                    large[largeCount++] = i;
+                }
+            }
+
+            // fill each small column with its own outcome, topping it up from a large one
+            while (smallCount > 0 && largeCount > 0) {
+                int less = small[--smallCount];
+                int more = large[--largeCount];
+
+                probability[less] = scaled[less];
+                alias[less] = more;
+                scaled[more] = (scaled[more] + scaled[less]) - 1.0;
+                if (scaled[more] < 1.0) {
+                    small[smallCount++] = more;
+                } else {
+                    large[largeCount++] = more;
+                }
+            }
+
+            // whatever remains is (up to roundoff) a full column
+            while (largeCount > 0) {
+                int i = large[--largeCount];
+                probability[i] = 1.0;
+                alias[i] = i;
+            }
+            while (smallCount > 0) {
+                int i = small[--smallCount];
+                probability[i] = 1.0;
+                alias[i] = i;
+            }
+        }
+
+        /**
+         * Returns the number of possible outcomes.
+         *
+         * @return the number of possible outcomes
+         */
+        public int size() {
+            return probability.length;
+        }
+
+        /**
+         * Returns a random integer from the distribution, using one or two
+         * random draws.
+         *
+         * @return a random integer from the distribution
+         */
+        public int sample(Random random) {
+            int column = random.nextInt(probability.length);
+            if (probability[column] >= 1.0 || random.nextDouble() < probability[column]) {
+                return column;
+            }
+            return alias[column];
+        }
+    }
+
     /**
      * Returns a random real number from an exponential distribution
      * with rate &lambda;.
@@ -0,0 +1,163 @@
+package byog.Core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A field of view limited to a radius, found by walking a table of offsets worked out in
+ * advance. The Bresenham line from the origin to a tile some offset away passes through the same
+ * offsets wherever the origin is, so the table only depends on the radius, and is shared by
+ * every world and every position.
+ *
+ * Each offset within the radius is kept once, along with the offset before it on its own line
+ * from the origin. Sight spreads out along these links: a tile is visible when the tile before
+ * it on its line is the origin, or is itself visible and does not block sight. The offsets are
+ * kept in order of their distance along their lines, so every tile is reached after the tile
+ * before it, and a field of view takes one step per offset. Both the table and the cost of a
+ * field of view grow with the area within the radius.
+ *
+ * This is close to, but not always the same as, LineOfSight: the tiles before a tile on its
+ * line need not lie on the lines of one another, so a tile may be seen around the edge of a
+ * wall which the line of sight would say hides it, or the other way around.
+ */
+public class RayTable implements FieldOfView {
+    /** The largest radius a table can be built for. */
+    public static final int MAX_RADIUS = 128;
+    // The most tables kept at once. The table used longest ago is dropped to make room.
+    private static final int MAX_TABLES = 4;
+    private static final LinkedHashMap<Integer, RayTable> TABLES =
+            new LinkedHashMap<Integer, RayTable>(8, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Integer, RayTable> eldest) {
+                    return size() > MAX_TABLES;
+                }
+            };
+
+    private final int radius;
+    private final int[] offsetX;
+    private final int[] offsetY;
+    private final int[] previous;
+    // Whether sight passes through each offset, kept between fields of view. A table is shared,
+    // so each thread has its own.
+    private final ThreadLocal<boolean[]> clear;
+
+    /**
+     * Retrieve the table for the given radius, building it if it is not already kept.
+     *
+     * @param radius : The distance beyond which no tile is visible, at most MAX_RADIUS.
+     * @return : The table.
+     */
+    public static RayTable of(int radius) {
+        if (radius < 0 || radius > MAX_RADIUS) {
+            throw new IllegalArgumentException("radius must be between 0 and " + MAX_RADIUS
+                    + ": " + radius);
+        }
+        synchronized (TABLES) {
+            RayTable table = TABLES.get(radius);
+            if (table == null) {
+                table = new RayTable(radius);
+                TABLES.put(radius, table);
+            }
+            return table;
+        }
+    }
+
+    private RayTable(int radius) {
+        this.radius = radius;
+
+        // Number every offset within the radius, other than the origin, in order of how many
+        // steps along its line it is from the origin, by counting the offsets at each step.
+        int span = 2 * radius + 1;
+        int[] atStep = new int[radius + 2];
+        for (int dx = -radius; dx <= radius; dx += 1) {
+            for (int dy = -radius; dy <= radius; dy += 1) {
+                if (inTable(dx, dy)) {
+                    atStep[Math.max(Math.abs(dx), Math.abs(dy)) + 1] += 1;
+                }
+            }
+        }
+        for (int steps = 1; steps < atStep.length; steps += 1) {
+            atStep[steps] += atStep[steps - 1];
+        }
+
+        int count = atStep[radius + 1];
+        int[] index = new int[span * span];
+        offsetX = new int[count];
+        offsetY = new int[count];
+        previous = new int[count];
+        for (int dx = -radius; dx <= radius; dx += 1) {
+            for (int dy = -radius; dy <= radius; dy += 1) {
+                if (inTable(dx, dy)) {
+                    int i = atStep[Math.max(Math.abs(dx), Math.abs(dy))];
+                    atStep[Math.max(Math.abs(dx), Math.abs(dy))] += 1;
+                    index[(dx + radius) * span + (dy + radius)] = i;
+                    offsetX[i] = dx;
+                    offsetY[i] = dy;
+                }
+            }
+        }
+
+        // Link each offset to the one before it on its line, which is one step nearer the
+        // origin, and so already numbered. The origin itself is -1.
+        BresenhamLine line = new BresenhamLine();
+        for (int i = 0; i < count; i += 1) {
+            line.reset(0, 0, offsetX[i], offsetY[i]);
+            int before = -1;
+            int prevX = 0;
+            int prevY = 0;
+            line.advance();
+            while (line.advance() && line.hasNext()) {
+                prevX = line.getX();
+                prevY = line.getY();
+            }
+            if (line.length() > 2) {
+                before = index[(prevX + radius) * span + (prevY + radius)];
+            }
+            previous[i] = before;
+        }
+        clear = ThreadLocal.withInitial(() -> new boolean[count]);
+    }
+
+    /**
+     * @return : Whether the given offset is within the radius, and is not the origin.
+     */
+    private boolean inTable(int dx, int dy) {
+        return (dx != 0 || dy != 0) && dx * dx + dy * dy <= radius * radius;
+    }
+
+    /**
+     * @return : The distance beyond which no tile is visible.
+     */
+    public int getRadius() {
+        return radius;
+    }
+
+    /**
+     * @return : The number of offsets in the table.
+     */
+    public int size() {
+        return offsetX.length;
+    }
+
+    @Override
+    public void compute(World world, int originX, int originY, Visibility visible) {
+        visible.set(originX, originY);
+
+        // Whether sight passes through each offset, to the offsets after it. The array still
+        // holds the last field of view, so every offset is written, not only visible ones.
+        boolean[] clear = this.clear.get();
+        for (int i = 0; i < offsetX.length; i += 1) {
+            clear[i] = false;
+            if (previous[i] >= 0 && !clear[previous[i]]) {
+                continue;
+            }
+            int x = originX + offsetX[i];
+            int y = originY + offsetY[i];
+            if (!visible.inBounds(x, y)) {
+                continue;
+            }
+            visible.set(x, y);
+            clear[i] = !world.blocksSight(x, y);
+        }
+    }
+}
@@ -1,11 +1,16 @@
-
 package byog.Core;
 
-import java.util.LinkedList;
+import byog.TileEngine.TETile;
+import byog.TileEngine.TileGrid;
+import java.util.function.IntConsumer;
 
 /**
- * Class representing a room in the world. Note, that the linked list of room tiles
- * is only the floor of the room. It does not include walls.
+ * Class representing a room in the world. Note, that the tiles of a room are only the floor of
+ * the room. They do not include walls.
+ *
+ * A room is stored as its rectangle alone. Its tiles are visited in place (see forEachTile)
+ * rather than kept as a list of points, so rooms cost the same to keep and to save whatever
+ * their size.
  */
 public class Room implements java.io.Serializable {
     private int x1;
@@ -13,7 +18,6 @@ public class Room implements java.io.Serializable {
     private int y1;
     private int y2;
     private Point center;
-    private LinkedList<Point> roomTiles;
 
     Room(int x, int y, int width, int height) {
         this.x1 = x;
@@ -21,38 +25,90 @@ public class Room implements java.io.Serializable {
         this.y1 = y;
         this.y2 = y + height;
         this.center = new Point((x1 + x2) / 2, (y1 + y2) / 2);
+    }
 
-        this.roomTiles = new LinkedList<>();
+    /**
+     * Check to see whether this room intersects with the given room.
+     *
+     * @param room : The room to check intersection with.
+     * @return : Whether the two rooms intersect.
+     */
+    public boolean intersects(Room room) {
+        return ((x1 <= room.x2 && x2 >= room.x1) && (y1 <= room.y2 && y2 >= room.y1));
+    }
 
-        // Add the room tiles based on the given coordinates.
+    /**
+     * @param x : The x-coordinate.
+     * @param y : The y-coordinate.
+     * @return : Whether the given position is a tile of this room.
+     */
+    public boolean contains(int x, int y) {
+        return x >= x1 && x < x2 && y >= y1 && y < y2;
+    }
+
+    /**
+     * Visit every tile of the room, column by column from the bottom-left. Each tile is given
+     * to the action packed into an int (see Point.pack).
+     *
+     * @param action : The action taking each packed tile.
+     */
+    public void forEachTile(IntConsumer action) {
         for (int i = x1; i < x2; i += 1) {
             for (int j = y1; j < y2; j += 1) {
-                roomTiles.add(new Point(i, j));
+                action.accept(Point.pack(i, j));
             }
         }
     }
 
     /**
-     * Check to see whether this room intersects with the given room.
+     * Set every tile of the room in the grid to the given tile.
      *
-     * @param room : The room to check intersection with.
-     * @return : Whether the two rooms intersect.
+     * @param grid : The grid to fill.
+     * @param material : The tile to fill with.
      */
-    public boolean intersects(Room room) {
-        return ((x1 <= room.x2 && x2 >= room.x1) && (y1 <= room.y2 && y2 >= room.y1));
+    public void fill(TileGrid grid, TETile material) {
+        grid.fill(x1, y1, x2, y2, material);
     }
 
     /**
-     * @return : The center point of the room.
+     * @return : The number of tiles in the room.
      */
-    public Point getCenter() {
-        return center;
+    public int area() {
+        return (x2 - x1) * (y2 - y1);
+    }
+
+    /**
+     * @return : The left-most x-coordinate of the room.
+     */
+    public int getX1() {
+        return x1;
+    }
+
+    /**
+     * @return : The x-coordinate just past the right of the room.
+     */
+    public int getX2() {
+        return x2;
     }
 
     /**
-     * @return : A linked list of room tiles.
+     * @return : The bottom-most y-coordinate of the room.
      */
-    public LinkedList<Point> getTiles() {
-        return roomTiles;
+    public int getY1() {
+        return y1;
+    }
+
+    /**
+     * @return : The y-coordinate just past the top of the room.
+     */
+    public int getY2() {
+        return y2;
+    }
+
+    /**
+     * @return : The center point of the room.
+     */
+    public Point getCenter() {
+        return center;
     }
 }
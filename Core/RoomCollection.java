@@ -2,27 +2,77 @@
 package byog.Core;
 
 import java.util.LinkedList;
+import java.util.Random;
+import java.util.function.IntConsumer;
 
 /**
- * Class representing a collection of all rooms in the current world.
+ * Class representing a collection of all rooms in the current world. A spatial index of the
+ * rooms is kept alongside the collection, so that candidate rooms may be checked against it
+ * without scanning every room.
  */
 public class RoomCollection implements java.io.Serializable {
     private LinkedList<Room> rooms;
+    private RoomIndex index;
 
     RoomCollection() {
         rooms = new LinkedList<>();
+        index = new RoomIndex();
     }
 
     /**
-     * @return : The floor tiles from every room in the room collection.
+     * Visit the floor tiles of every room in the room collection, room by room. Each tile is
+     * given to the action packed into an int (see Point.pack).
+     *
+     * @param action : The action taking each packed tile.
+     */
+    public void forEachFloorTile(IntConsumer action) {
+        for (Room room : rooms) {
+            room.forEachTile(action);
+        }
+    }
+
+    /**
+     * Visit each floor tile of every room with the given probability, independently of the
+     * other tiles. The tiles are taken in the same order as forEachFloorTile, but rather than
+     * drawing a random number for every tile, the gap to the next chosen tile is drawn (see
+     * RandomUtils.geometricSkip). This draws one random number per chosen tile plus one, and
+     * jumps straight over rooms with no chosen tiles, so it costs time in proportion to the
+     * number of rooms and chosen tiles rather than the floor area.
+     *
+     * @param random : The random number generator drawing the gaps.
+     * @param probability : The chance of choosing any one floor tile.
+     * @param action : The action taking each chosen packed tile.
+     */
+    public void forEachSampledFloorTile(Random random, double probability, IntConsumer action) {
+        long next = RandomUtils.geometricSkip(random, probability);
+        long start = 0;
+
+        for (Room room : rooms) {
+            int height = room.getY2() - room.getY1();
+            long end = start + room.area();
+
+            while (next < end) {
+                int offset = (int) (next - start);
+                action.accept(Point.pack(room.getX1() + offset / height,
+                        room.getY1() + offset % height));
+
+                long skip = RandomUtils.geometricSkip(random, probability);
+                next = skip >= Long.MAX_VALUE - next ? Long.MAX_VALUE : next + 1 + skip;
+            }
+            start = end;
+        }
+    }
+
+    /**
+     * @return : The number of floor tiles from every room in the room collection.
      */
-    public LinkedList<Point> getFloorTiles() {
-        LinkedList<Point> roomCollectionTiles = new LinkedList<>();
+    public int floorTileCount() {
+        int count = 0;
 
         for (Room room : rooms) {
-            roomCollectionTiles.addAll(room.getTiles());
+            count += room.area();
         }
-        return roomCollectionTiles;
+        return count;
     }
 
     /**
@@ -32,6 +82,14 @@ public class RoomCollection implements java.io.Serializable {
      */
     public void add(Room room) {
         rooms.add(room);
+        index.add(room);
+    }
+
+    /**
+     * @return : The spatial index of the rooms in the room collection.
+     */
+    public RoomIndex getIndex() {
+        return index;
     }
 
     /**
@@ -52,87 +110,126 @@ public class RoomCollection implements java.io.Serializable {
     }
 
     /**
-     * Find the nearest room in the room collection to the given room.
-     *
-     * @param current : The room to find the nearest to.
-     * @return : The room nearest the given room.
+     * Sort all the rooms in the room collection based on their distance from the first room in
+     * the room collection.
      */
-    private Room findNearest(Room current) {
-        Room nearest = rooms.get(0);
-
-        for (int i = 1; i < rooms.size(); i += 1) {
-            if (rooms.get(i).equals(current)) {
-                continue;
-            }
-
-            if (rooms.get(i).getCenter().distance(current.getCenter())
-                    < rooms.get(i).getCenter().distance(nearest.getCenter())) {
-                nearest = rooms.get(i);
-            }
-        }
-        return nearest;
+    public void sortByDistance() {
+        sortByDistance(new int[rooms.size()], 1);
     }
 
     /**
-     * @return : The last room in the room collection.
+     * Order the rooms exactly as they would be ordered had the collection been sorted by
+     * distance after every placement attempt. The rooms must be in the order they were placed,
+     * with placedAt giving the attempt on which each was placed. Only the room centers are
+     * needed, so the passes are done over primitive arrays rather than the list of rooms.
+     *
+     * @param placedAt : The placement attempt of each room, in placement order.
+     * @param attempts : The total number of placement attempts.
      */
-    private Room getLast() {
-        return rooms.getLast();
-    }
+    public void sortByDistance(int[] placedAt, int attempts) {
+        int count = rooms.size();
+        int[] centerX = new int[count];
+        int[] centerY = new int[count];
+        int[] order = new int[count];
+        int[] remaining = new int[count];
+        int[] saved = new int[count];
+
+        for (int i = 0; i < count; i += 1) {
+            centerX[i] = rooms.get(i).getCenter().getX();
+            centerY[i] = rooms.get(i).getCenter().getY();
+        }
 
-    /**
-     * @return : The first room in the room collection (now removed).
-     */
-    private Room removeFirst() {
-        return rooms.removeFirst();
-    }
+        for (int placed = 0; placed < count; placed += 1) {
+            order[placed] = placed;
+            int nextPlacement = placed + 1 < count ? placedAt[placed + 1] : attempts;
+
+            // A pass depends only on the order it is given, so the orders it passes through
+            // repeat once any order comes round again. The order is saved at every power of two
+            // passes, and once it comes round to the saved order, whole cycles are skipped.
+            int savedAt = placedAt[placed];
+            int limit = 1;
+            System.arraycopy(order, 0, saved, 0, placed + 1);
+            for (int pass = placedAt[placed]; pass < nextPlacement; pass += 1) {
+                distancePass(order, remaining, placed + 1, centerX, centerY);
+                int done = pass + 1;
+                if (same(order, saved, placed + 1)) {
+                    int left = (nextPlacement - done) % (done - savedAt);
+                    for (int i = 0; i < left; i += 1) {
+                        distancePass(order, remaining, placed + 1, centerX, centerY);
+                    }
+                    break;
+                }
+                if (done - savedAt == limit) {
+                    System.arraycopy(order, 0, saved, 0, placed + 1);
+                    savedAt = done;
+                    limit *= 2;
+                }
+            }
+        }
 
-    /**
-     * Remove the room from the room collection at the given index.
-     *
-     * @param index : The index of the room to be removed.
-     * @return : The removed room.
-     */
-    private Room remove(int index) {
-        return rooms.remove(index);
+        LinkedList<Room> sorted = new LinkedList<>();
+        for (int i = 0; i < count; i += 1) {
+            sorted.add(rooms.get(order[i]));
+        }
+        rooms = sorted;
     }
 
     /**
-     * Return the index of the given room within the room collection.
-     *
-     * @param room : The room to find the index of.
-     * @return : The index of the given room.
+     * @return : Whether the first count entries of a and b are the same.
      */
-    private int indexOf(Room room) {
-        return rooms.indexOf(room);
+    private static boolean same(int[] a, int[] b, int count) {
+        for (int i = 0; i < count; i += 1) {
+            if (a[i] != b[i]) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * Add all of the rooms in the given collection to this room collection.
+     * A single sorting pass. Starting from the first room, the next room is repeatedly chosen
+     * from those remaining, keeping a candidate only if it is closer to the last chosen room than
+     * it is to the current nearest. Squared distances are compared, which orders the same as the
+     * distances themselves.
      *
-     * @param otherRooms : The room collection to add.
+     * @param order : The room order, rewritten in place.
+     * @param remaining : Scratch space at least as large as the order.
+     * @param count : The number of rooms in the order.
+     * @param centerX : The x-coordinate of each room's center.
+     * @param centerY : The y-coordinate of each room's center.
      */
-    private void addAll(RoomCollection otherRooms) {
-        rooms.addAll(otherRooms.rooms);
+    private static void distancePass(int[] order, int[] remaining, int count,
+                                     int[] centerX, int[] centerY) {
+        int remainingCount = count - 1;
+        System.arraycopy(order, 1, remaining, 0, remainingCount);
+
+        for (int next = 1; next < count; next += 1) {
+            int last = order[next - 1];
+            int nearestIndex = 0;
+            int nearest = remaining[0];
+
+            for (int i = 1; i < remainingCount; i += 1) {
+                int room = remaining[i];
+                if (distanceSquared(room, last, centerX, centerY)
+                        < distanceSquared(room, nearest, centerX, centerY)) {
+                    nearest = room;
+                    nearestIndex = i;
+                }
+            }
+
+            order[next] = nearest;
+            System.arraycopy(remaining, nearestIndex + 1, remaining, nearestIndex,
+                    remainingCount - nearestIndex - 1);
+            remainingCount -= 1;
+        }
     }
 
     /**
-     * Sort all the rooms in the room collection based on their distance from the first room in
-     * the room collection.
+     * @return : The squared distance between the centers of rooms a and b.
      */
-    public void sortByDistance() {
-        Room current;
-        int currentIndex;
-
-        RoomCollection traversed = new RoomCollection();
-
-        traversed.add(removeFirst());
-
-        while (size() > 0) {
-            current = findNearest(traversed.getLast());
-            currentIndex = indexOf(current);
-            traversed.add(remove(currentIndex));
-        }
-        addAll(traversed);
+    private static int distanceSquared(int a, int b, int[] centerX, int[] centerY) {
+        int deltaX = centerX[a] - centerX[b];
+        int deltaY = centerY[a] - centerY[b];
+        return deltaX * deltaX + deltaY * deltaY;
     }
 }
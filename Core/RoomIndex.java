@@ -0,0 +1,114 @@
+package byog.Core;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+
+/**
+ * A uniform grid spatial index of placed rooms. The world is divided into square cells, and each
+ * room is registered in every cell its bounds touch. A candidate room then only needs to be
+ * checked against the rooms sharing one of its cells, rather than every room placed so far.
+ *
+ * The index also remembers every column and row that a room's center lies on, so that the
+ * check keeping room centers offset from one another is a single lookup.
+ */
+public class RoomIndex implements java.io.Serializable {
+    private static final int CELL_SIZE = 16;
+
+    private HashMap<Long, LinkedList<Room>> cells;
+    private HashSet<Integer> centerColumns;
+    private HashSet<Integer> centerRows;
+
+    RoomIndex() {
+        this.cells = new HashMap<>();
+        this.centerColumns = new HashSet<>();
+        this.centerRows = new HashSet<>();
+    }
+
+    /**
+     * Add a room to the index.
+     *
+     * @param room : The room to be added.
+     */
+    public void add(Room room) {
+        for (int cellX = cellOf(room.getX1()); cellX <= cellOf(room.getX2()); cellX += 1) {
+            for (int cellY = cellOf(room.getY1()); cellY <= cellOf(room.getY2()); cellY += 1) {
+                long key = cellKey(cellX, cellY);
+                LinkedList<Room> cell = cells.get(key);
+
+                if (cell == null) {
+                    cell = new LinkedList<>();
+                    cells.put(key, cell);
+                }
+                cell.add(room);
+            }
+        }
+        centerColumns.add(room.getCenter().getX());
+        centerRows.add(room.getCenter().getY());
+    }
+
+    /**
+     * Check whether the given room intersects any room in the index.
+     *
+     * @param room : The room to check.
+     * @return : Whether the room intersects an indexed room.
+     */
+    public boolean intersects(Room room) {
+        for (int cellX = cellOf(room.getX1()); cellX <= cellOf(room.getX2()); cellX += 1) {
+            for (int cellY = cellOf(room.getY1()); cellY <= cellOf(room.getY2()); cellY += 1) {
+                LinkedList<Room> cell = cells.get(cellKey(cellX, cellY));
+
+                if (cell == null) {
+                    continue;
+                }
+
+                for (Room other : cell) {
+                    if (other.intersects(room)) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check whether the given room's center shares a column or row with the center of any
+     * room in the index.
+     *
+     * @param room : The room to check.
+     * @return : Whether the room's center is aligned with an indexed room's center.
+     */
+    public boolean sharesCenterLine(Room room) {
+        return centerColumns.contains(room.getCenter().getX())
+                || centerRows.contains(room.getCenter().getY());
+    }
+
+    /**
+     * Check whether the given room may not be placed, i.e., it either intersects an indexed
+     * room or is not offset from one.
+     *
+     * @param room : The candidate room.
+     * @return : Whether the candidate conflicts with an indexed room.
+     */
+    public boolean conflicts(Room room) {
+        return sharesCenterLine(room) || intersects(room);
+    }
+
+    /**
+     * @param coordinate : A world coordinate.
+     * @return : The index of the cell containing the coordinate.
+     */
+    private static int cellOf(int coordinate) {
+        return Math.floorDiv(coordinate, CELL_SIZE);
+    }
+
+    /**
+     * @param cellX : The x index of a cell.
+     * @param cellY : The y index of a cell.
+     * @return : A single key identifying the cell.
+     */
+    private static long cellKey(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xFFFFFFFFL);
+    }
+}
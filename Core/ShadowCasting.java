@@ -0,0 +1,114 @@
+package byog.Core;
+
+/**
+ * Symmetric recursive shadowcasting, after Albert Ford's description of the algorithm. The area
+ * around the origin is split into four quadrants, and each is swept outward one row at a time.
+ * A row is the span of tiles between two slopes, and whenever the sweep passes from floor into
+ * a wall, the part of the next row still lit up to that wall is swept recursively while the
+ * slopes of the current row are narrowed past it. Only tiles which can actually be seen are
+ * visited, so the work done is proportional to the visible area rather than the whole world.
+ *
+ * Slopes are kept as exact fractions of integers. A floor tile is visible only when its center
+ * lies within the lit slopes, which makes the result symmetric: if one tile can see another,
+ * the other can see it. Walls are visible whenever any part of them is lit. Tiles outside the
+ * world are treated as walls.
+ *
+ * Sources:
+ *   @Source : https://www.albertford.com/shadowcasting/
+ */
+public class ShadowCasting implements FieldOfView, java.io.Serializable {
+    // How a quadrant's rows and columns map onto the world: north, south, east and west.
+    private static final int[] ROW_X = new int[]{0, 0, 1, -1};
+    private static final int[] ROW_Y = new int[]{1, -1, 0, 0};
+    private static final int[] COL_X = new int[]{1, 1, 0, 0};
+    private static final int[] COL_Y = new int[]{0, 0, 1, 1};
+
+    private static final int NONE = 0;
+    private static final int WALL = 1;
+    private static final int FLOOR = 2;
+
+    @Override
+    public void compute(World world, int originX, int originY, Visibility visible) {
+        visible.set(originX, originY);
+
+        for (int i = 0; i < ROW_X.length; i += 1) {
+            new Quadrant(world, visible, originX, originY, i).scan(1, -1, 1, 1, 1);
+        }
+    }
+
+    /**
+     * One quadrant of the sweep around the origin.
+     */
+    private static class Quadrant {
+        private final World world;
+        private final Visibility visible;
+        private final int originX;
+        private final int originY;
+        private final int direction;
+
+        Quadrant(World world, Visibility visible, int originX, int originY, int direction) {
+            this.world = world;
+            this.visible = visible;
+            this.originX = originX;
+            this.originY = originY;
+            this.direction = direction;
+        }
+
+        /**
+         * Sweep the row at the given depth between the given slopes, and every row behind it
+         * which is still lit. The slopes are startNum / startDen and endNum / endDen, with
+         * positive denominators.
+         *
+         * @param depth : The distance of the row from the origin.
+         */
+        void scan(int depth, long startNum, long startDen, long endNum, long endDen) {
+            int minCol = roundTiesUp(depth * startNum, startDen);
+            int maxCol = roundTiesDown(depth * endNum, endDen);
+            int previous = NONE;
+
+            for (int col = minCol; col <= maxCol; col += 1) {
+                int x = originX + depth * ROW_X[direction] + col * COL_X[direction];
+                int y = originY + depth * ROW_Y[direction] + col * COL_Y[direction];
+                boolean wall = blocksSight(x, y);
+
+                // A floor tile is visible only if its center is lit.
+                if (wall || (col * startDen >= depth * startNum
+                        && col * endDen <= depth * endNum)) {
+                    visible.set(x, y);
+                }
+
+                if (previous == WALL && !wall) {
+                    // Leaving a wall: the light now starts at this tile's near edge.
+                    startNum = 2 * col - 1;
+                    startDen = 2 * depth;
+                } else if (previous == FLOOR && wall) {
+                    // Entering a wall: the lit part of the next row ends at its near edge.
+                    scan(depth + 1, startNum, startDen, 2 * col - 1, 2 * depth);
+                }
+                previous = wall ? WALL : FLOOR;
+            }
+
+            if (previous == FLOOR) {
+                scan(depth + 1, startNum, startDen, endNum, endDen);
+            }
+        }
+
+        private boolean blocksSight(int x, int y) {
+            return !visible.inBounds(x, y) || world.blocksSight(x, y);
+        }
+
+        /**
+         * @return : The value num / den rounded to the nearest integer, rounding halves up.
+         */
+        private static int roundTiesUp(long num, long den) {
+            return (int) Math.floorDiv(2 * num + den, 2 * den);
+        }
+
+        /**
+         * @return : The value num / den rounded to the nearest integer, rounding halves down.
+         */
+        private static int roundTiesDown(long num, long den) {
+            return (int) -Math.floorDiv(den - 2 * num, 2 * den);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package byog.Core;
+
+import java.util.Random;
+
+/**
+ * A fast, splittable stream of random numbers, usable anywhere a java.util.Random is expected.
+ * Numbers come from the SplitMix64 generator: the state is advanced by a fixed odd constant and
+ * then scrambled (see RandomUtils.mix). Unlike java.util.Random, no atomic compare-and-set is
+ * done per number, so a stream must only be used by one thread at a time.
+ *
+ * Streams are derived from a seed and a stream number (see RandomUtils.deriveSeed), so each user
+ * of randomness, such as a generation stage or a chunk, can be given its own stream. The numbers
+ * drawn from one stream never change those drawn from another.
+ *
+ * Sources:
+ *   @Source : https://doi.org/10.1145/2714064.2660195 (Fast splittable pseudorandom number
+ *              generators, Steele, Lea and Flood)
+ */
+public class StreamRandom extends Random {
+    private long state;
+
+    /**
+     * @param seed : The seed of the stream.
+     */
+    public StreamRandom(long seed) {
+        super(0L);
+        this.state = seed;
+    }
+
+    /**
+     * Create a stream for the given stream number of the given seed.
+     *
+     * @param seed : The seed from which streams are derived.
+     * @param stream : The stream number.
+     * @return : The stream.
+     */
+    public static StreamRandom of(long seed, long stream) {
+        return new StreamRandom(RandomUtils.deriveSeed(seed, stream));
+    }
+
+    /**
+     * Create a new, independent stream from this one, advancing this stream by one number.
+     *
+     * @return : The new stream.
+     */
+    public StreamRandom split() {
+        return new StreamRandom(nextLong());
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        this.state = seed;
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public long nextLong() {
+        state += RandomUtils.GOLDEN_GAMMA;
+        return RandomUtils.mix(state);
+    }
+
+    @Override
+    public int nextInt() {
+        return (int) (nextLong() >>> 32);
+    }
+
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    @Override
+    public boolean nextBoolean() {
+        return nextLong() < 0;
+    }
+}
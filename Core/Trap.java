@@ -1,7 +1,6 @@
 package byog.Core;
 
 import byog.TileEngine.TETile;
-import java.util.LinkedList;
 
 /**
  * This class deals with the traps of the world. Traps hurt the player in both the
@@ -9,11 +8,11 @@ import java.util.LinkedList;
  */
 public class Trap implements java.io.Serializable {
     private final TETile trap;
-    private LinkedList<Point> allTraps;
+    private PositionSet allTraps;
 
     Trap(TETile trapTile) {
         this.trap = trapTile;
-        allTraps = new LinkedList<>();
+        allTraps = new PositionSet();
     }
 
     /**
@@ -24,7 +23,7 @@ public class Trap implements java.io.Serializable {
     }
 
     /**
-     * Add a trap to the list of traps.
+     * Add a trap to the set of traps.
      *
      * @param position : The position of the new traps.
      */
@@ -33,18 +32,34 @@ public class Trap implements java.io.Serializable {
     }
 
     /**
-     * @return : The list of all the current traps.
+     * @return : The set of all the current trap positions.
      */
-    public LinkedList<Point> getAllTraps() {
+    public PositionSet getAllTraps() {
         return allTraps;
     }
 
     /**
-     * Remove all of the traps from the trap list.
+     * @param position : The position to check.
+     * @return : Whether there is a trap at the given position.
+     */
+    public boolean isTrap(Point position) {
+        return allTraps.contains(position);
+    }
+
+    /**
+     * Remove the trap at the given position, if there is one.
+     *
+     * @param position : The position of the trap.
+     * @return : Whether there was a trap at the given position.
+     */
+    public boolean removeTrap(Point position) {
+        return allTraps.remove(position);
+    }
+
+    /**
+     * Remove all of the traps from the trap set.
      */
     public void removeAllTraps() {
-        while (!allTraps.isEmpty()) {
-            allTraps.removeFirst();
-        }
+        allTraps = new PositionSet();
     }
 }
@@ -0,0 +1,198 @@
+package byog.Core;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * The set of tiles visible from some position, one bit per tile of the world. It is meant to be
+ * cleared and filled again whenever the player moves, rather than allocated anew. Bit y of
+ * column x is set when the tile at (x, y) is visible, with each column spanning as many longs
+ * as its height needs (as in WallMask). The range of columns holding visible tiles is kept, so
+ * clearing and comparing visibilities only touches the columns in view.
+ *
+ * A visibility can be compressed into an array holding just the rectangle of words in view,
+ * e.g., to be kept in a cache, and merged back in later.
+ */
+public class Visibility {
+    private final int width;
+    private final int height;
+    private final int words;
+    private final long[] bits;
+    private int minColumn;
+    private int maxColumn;
+
+    /**
+     * @param width : The width of the world.
+     * @param height : The height of the world.
+     */
+    Visibility(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("invalid size: " + width + "x" + height);
+        }
+        this.width = width;
+        this.height = height;
+        this.words = (height + 63) >>> 6;
+        this.bits = new long[width * words];
+        this.minColumn = width;
+        this.maxColumn = -1;
+    }
+
+    /**
+     * @return : The width of the world.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return : The height of the world.
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @param x : The x-coordinate.
+     * @param y : The y-coordinate.
+     * @return : Whether the tile lies within the world.
+     */
+    public boolean inBounds(int x, int y) {
+        return x >= 0 && x < width && y >= 0 && y < height;
+    }
+
+    /**
+     * @param x : The x-coordinate.
+     * @param y : The y-coordinate.
+     * @return : Whether the tile is visible. Tiles outside the world never are.
+     */
+    public boolean isVisible(int x, int y) {
+        if (!inBounds(x, y)) {
+            return false;
+        }
+        return (bits[x * words + (y >>> 6)] & (1L << y)) != 0;
+    }
+
+    /**
+     * Mark the given tile visible. Tiles outside the world are ignored.
+     *
+     * @param x : The x-coordinate.
+     * @param y : The y-coordinate.
+     */
+    public void set(int x, int y) {
+        if (inBounds(x, y)) {
+            bits[x * words + (y >>> 6)] |= 1L << y;
+            minColumn = Math.min(minColumn, x);
+            maxColumn = Math.max(maxColumn, x);
+        }
+    }
+
+    /**
+     * Mark every tile not visible.
+     */
+    public void clear() {
+        if (minColumn <= maxColumn) {
+            Arrays.fill(bits, minColumn * words, (maxColumn + 1) * words, 0);
+        }
+        minColumn = width;
+        maxColumn = -1;
+    }
+
+    /**
+     * @return : The number of visible tiles.
+     */
+    public int count() {
+        int count = 0;
+        for (int i = minColumn * words; i < (maxColumn + 1) * words; i += 1) {
+            count += Long.bitCount(bits[i]);
+        }
+        return count;
+    }
+
+    /**
+     * Visit every tile which is visible in exactly one of this and the given visibility, i.e.,
+     * every tile which came into or went out of view. Whole words of tiles are skipped at a time
+     * where nothing changed. Each position is given to the action packed into an int (see
+     * Point.pack).
+     *
+     * @param other : A visibility of the same size.
+     * @param action : The action taking each packed position.
+     */
+    public void forEachDifference(Visibility other, IntConsumer action) {
+        if (other.width != width || other.height != height) {
+            throw new IllegalArgumentException("visibilities differ in size");
+        }
+        int from = Math.min(minColumn, other.minColumn) * words;
+        int to = (Math.max(maxColumn, other.maxColumn) + 1) * words;
+
+        for (int i = from; i < to; i += 1) {
+            long changed = bits[i] ^ other.bits[i];
+            while (changed != 0) {
+                int x = i / words;
+                int y = ((i % words) << 6) + Long.numberOfTrailingZeros(changed);
+                action.accept(Point.pack(x, y));
+                changed &= changed - 1;
+            }
+        }
+    }
+
+    /**
+     * Copy the visible tiles into an array only as large as the part of the world in view. The
+     * array starts with the range of columns and the range of words within each column that it
+     * holds, followed by those words, column by column.
+     *
+     * @return : The compressed visibility.
+     */
+    public long[] compress() {
+        if (minColumn > maxColumn) {
+            return new long[0];
+        }
+
+        int minWord = words;
+        int maxWord = -1;
+        for (int x = minColumn; x <= maxColumn; x += 1) {
+            for (int w = 0; w < words; w += 1) {
+                if (bits[x * words + w] != 0) {
+                    minWord = Math.min(minWord, w);
+                    maxWord = Math.max(maxWord, w);
+                }
+            }
+        }
+
+        int span = maxWord - minWord + 1;
+        long[] compressed = new long[2 + (maxColumn - minColumn + 1) * span];
+        compressed[0] = ((long) minColumn << 32) | maxColumn;
+        compressed[1] = ((long) minWord << 32) | maxWord;
+        for (int x = minColumn; x <= maxColumn; x += 1) {
+            System.arraycopy(bits, x * words + minWord, compressed,
+                    2 + (x - minColumn) * span, span);
+        }
+        return compressed;
+    }
+
+    /**
+     * Mark visible every tile visible in the given compressed visibility.
+     *
+     * @param compressed : A visibility of the same size, compressed by compress.
+     */
+    public void merge(long[] compressed) {
+        if (compressed.length == 0) {
+            return;
+        }
+
+        int fromColumn = (int) (compressed[0] >>> 32);
+        int toColumn = (int) compressed[0];
+        int minWord = (int) (compressed[1] >>> 32);
+        int span = (int) compressed[1] - minWord + 1;
+        if (toColumn >= width || minWord + span > words) {
+            throw new IllegalArgumentException("compressed visibility does not fit");
+        }
+
+        for (int x = fromColumn; x <= toColumn; x += 1) {
+            for (int w = 0; w < span; w += 1) {
+                bits[x * words + minWord + w] |= compressed[2 + (x - fromColumn) * span + w];
+            }
+        }
+        minColumn = Math.min(minColumn, fromColumn);
+        maxColumn = Math.max(maxColumn, toColumn);
+    }
+}
@@ -0,0 +1,200 @@
+package byog.Core;
+
+import byog.TileEngine.TETile;
+import byog.TileEngine.TileGrid;
+import byog.TileEngine.TilePalette;
+
+/**
+ * Bit masks for finding where walls go, computed a word (64 tiles) at a time rather than a tile
+ * at a time. Every column of the world is a bitset over its rows: bit y of column x is set when
+ * the tile at (x, y) is part of the mask. A column spans as many longs as its height needs.
+ *
+ * Two kinds of wall are supported:
+ *   - The outline of the floor: every empty tile touching a floor tile (including diagonally).
+ *     This is the dilation of the floor minus the floor itself.
+ *   - The walls World has always built. Its builder scans the world column by column, bottom to
+ *     top, and turns every empty neighbor of a non-empty tile into a wall. As the walls it builds
+ *     are themselves non-empty by the time they are scanned, walls spread from the floor into
+ *     the rest of the world. Within a column, once one tile is non-empty when scanned, every tile
+ *     above it is too, so this spreading can also be computed a column at a time.
+ */
+public class WallMask {
+    private final int width;
+    private final int height;
+    private final int words;
+    private final long[] floor;
+
+    /**
+     * Build the mask of non-empty tiles in the given grid.
+     *
+     * @param grid : The tiles.
+     * @param empty : The tile representing an empty space.
+     */
+    WallMask(TileGrid grid, TETile empty) {
+        this.width = grid.getWidth();
+        this.height = grid.getHeight();
+        this.words = (height + 63) >>> 6;
+        this.floor = new long[width * words];
+
+        int emptyId = TilePalette.idOf(empty);
+        for (int x = 0; x < width; x += 1) {
+            for (int y = 0; y < height; y += 1) {
+                if (grid.getId(x, y) != emptyId) {
+                    floor[x * words + (y >>> 6)] |= 1L << y;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return : The number of longs making up each column of a mask.
+     */
+    public int getWords() {
+        return words;
+    }
+
+    /**
+     * @param mask : A mask from this object.
+     * @param x : The x-coordinate.
+     * @param y : The y-coordinate.
+     * @return : Whether the given tile is in the mask.
+     */
+    public boolean contains(long[] mask, int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return false;
+        }
+        return (mask[x * words + (y >>> 6)] & (1L << y)) != 0;
+    }
+
+    /**
+     * Remove the given tile from the mask.
+     */
+    public void remove(long[] mask, int x, int y) {
+        mask[x * words + (y >>> 6)] &= ~(1L << y);
+    }
+
+    /**
+     * @return : Every empty tile touching a non-empty tile.
+     */
+    public long[] outline() {
+        long[] walls = new long[width * words];
+        long[] dilated = new long[words];
+
+        for (int x = 0; x < width; x += 1) {
+            for (int dx = -1; dx <= 1; dx += 1) {
+                if (x + dx >= 0 && x + dx < width) {
+                    dilateInto(floor, x + dx, dilated, x * words, walls);
+                }
+            }
+            for (int w = 0; w < words; w += 1) {
+                walls[x * words + w] &= ~floor[x * words + w];
+            }
+        }
+        return walls;
+    }
+
+    /**
+     * Find the tiles from which World's builder spreads walls, i.e., those tiles which are
+     * non-empty when the builder scans them. Only tiles not on the edge of the world are scanned.
+     *
+     * @return : The mask of source tiles.
+     */
+    public long[] cascadeSources() {
+        long[] sources = new long[width * words];
+        long[] nonEmpty = new long[words];
+        long[] dilated = new long[words];
+
+        for (int x = 1; x < width - 1; x += 1) {
+            // A column starts out with its own floor, plus the walls spread from the column before.
+            System.arraycopy(floor, x * words, nonEmpty, 0, words);
+            dilateInto(sources, x - 1, dilated, 0, nonEmpty);
+
+            // Every scanned tile from the lowest non-empty scanned tile upward is a source.
+            boolean found = false;
+            for (int w = 0; w < words; w += 1) {
+                long scanned = nonEmpty[w] & interior(w);
+                if (found) {
+                    sources[x * words + w] = interior(w);
+                } else if (scanned != 0) {
+                    sources[x * words + w] = -Long.lowestOneBit(scanned) & interior(w);
+                    found = true;
+                }
+            }
+        }
+        return sources;
+    }
+
+    /**
+     * @param sources : The sources found by cascadeSources.
+     * @return : Every empty tile touching a source, i.e., the walls World's builder builds.
+     */
+    public long[] cascade(long[] sources) {
+        long[] walls = new long[width * words];
+        long[] dilated = new long[words];
+
+        for (int x = 0; x < width; x += 1) {
+            for (int dx = -1; dx <= 1; dx += 1) {
+                if (x + dx >= 0 && x + dx < width) {
+                    dilateInto(sources, x + dx, dilated, x * words, walls);
+                }
+            }
+            for (int w = 0; w < words; w += 1) {
+                walls[x * words + w] &= ~floor[x * words + w];
+            }
+        }
+        return walls;
+    }
+
+    /**
+     * OR column x of the mask, grown by one tile up and down, into target at the given offset.
+     *
+     * @param mask : The mask holding the column.
+     * @param x : The column.
+     * @param scratch : Space for one column.
+     * @param offset : The index in target at which the column starts.
+     * @param target : The mask to OR into.
+     */
+    private void dilateInto(long[] mask, int x, long[] scratch, int offset, long[] target) {
+        int start = x * words;
+
+        for (int w = 0; w < words; w += 1) {
+            long column = mask[start + w];
+            long up = column << 1;
+            long down = column >>> 1;
+
+            if (w > 0) {
+                up |= mask[start + w - 1] >>> 63;
+            }
+            if (w < words - 1) {
+                down |= mask[start + w + 1] << 63;
+            }
+            scratch[w] = (column | up | down) & inside(w);
+        }
+        for (int w = 0; w < words; w += 1) {
+            target[offset + w] |= scratch[w];
+        }
+    }
+
+    /**
+     * @return : The bits of word w lying within the height of the world.
+     */
+    private long inside(int w) {
+        int bits = height - (w << 6);
+        return bits >= 64 ? -1L : (1L << bits) - 1;
+    }
+
+    /**
+     * @return : The bits of word w lying within the height of the world, but not on its edge.
+     */
+    private long interior(int w) {
+        long bits = inside(w);
+        if (w == 0) {
+            bits &= ~1L;
+        }
+        int top = height - 1;
+        if (top >>> 6 == w) {
+            bits &= ~(1L << top);
+        }
+        return bits;
+    }
+}
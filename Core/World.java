@@ -2,23 +2,34 @@
 package byog.Core;
 
 import byog.TileEngine.TETile;
+import byog.TileEngine.TileGrid;
+import byog.TileEngine.TilePalette;
+import byog.TileEngine.TileProperties;
 import byog.TileEngine.Tileset;
-import java.util.LinkedList;
 import java.util.Random;
+import java.util.function.IntConsumer;
 
 /**
  * This class generates and builds a pseudo-random world. This pseudo-random world is based upon
- * a seed entered by the user at game start. Within this method, rooms are generated, then
- * hallways, and then finally a player.
+ * a seed entered by the user at game start. Generation is split into stages (see
+ * GenerationStage), each of which is run exactly once: rooms are placed and then ordered, the
+ * rooms and hallways are carved into the world, walls are built, traps and energy are placed,
+ * and then finally a player is spawned. The time taken by each stage is recorded.
  *
  * The rooms are randomly placed within the world space for a certain number of random attempts.
  * If a room intersects an already placed room, it is discarded. These rooms are randomly sized,
  * with smaller rooms preferred over larger ones.
  *
- * Once the rooms are placed, hallways are generated. The rooms are ordered based on their distance
- * from the first room placed. Then, hallways are generated, connecting this first room to the next
- * closest, and then that room to its next closest, and so on. This assures that all rooms are
- * connected with minimal crossover of hallways and rooms.
+ * Once the rooms are placed, hallways are generated. The rooms are joined along a minimum
+ * spanning tree of their centers, with a few extra hallways added to form loops. This assures
+ * that all rooms are connected while keeping hallways short (see HallwayPlanner).
+ *
+ * Worlds may instead be generated with the legacy layout, in which the rooms are ordered based on
+ * their distance from the first room placed, and hallways connect this first room to the next
+ * closest, and then that room to its next closest, and so on. This ordering reproduces the one
+ * produced when the rooms were re-sorted after every placement attempt, and traps and energy are
+ * placed with a random draw per floor tile (see Builder.placeItems), so a given seed yields the
+ * same world it always has.
  *
  * With rooms and hallways generated and built, walls are built. Walls are simply places where a
  * floor tile (placed during the preceding operations) meets and empty tile.
@@ -40,12 +51,14 @@ import java.util.Random;
  *   This worked, but looked too uniform. The grid was clearly seen within the randomness. After
  *   trying a few different things, I finally utilized the resources above.
  */
-public class World implements java.io.Serializable {
+public class World implements java.io.Serializable, AutoCloseable {
     private static final TETile FLOOR = Tileset.FLOOR;
     private static final TETile WALL  = Tileset.WALL;
     private static final TETile EMPTY = Tileset.NOTHING;
     private static final TETile TRAP = Tileset.TRAP;
     private static final TETile ENERGY = Tileset.ENERGY;
+    private static final int TRAPID = TilePalette.idOf(TRAP);
+    private static final int ENERGYID = TilePalette.idOf(ENERGY);
     private static final TETile WALL1 = Tileset.WALL1;
     private static final TETile WALL2 = Tileset.WALL2;
     private static final TETile WALL3 = Tileset.WALL3;
@@ -53,8 +66,24 @@ public class World implements java.io.Serializable {
     private static final TETile WALL5 = Tileset.WALL5;
     private static final TETile[] DECORATIVETILES = new TETile[]{WALL1,
         WALL2, WALL3, WALL4, WALL5};
-
-    private TETile[][] world;
+    static final RandomUtils.DiscreteSampler DECORATIVEVARIANTS =
+            RandomUtils.sampler(new int[]{1, 1, 1, 1, 1});
+    /** The chance of a trap, and of an energy, on any one room floor tile. */
+    static final double TRAP_FREQUENCY = 0.25;
+    static final double ENERGY_FREQUENCY = 0.01;
+
+    /** Worlds and chunks get one extra hallway, forming a loop, for this many rooms. */
+    static final int LOOP_DIVISOR = 8;
+    private static final int ROOM_ATTEMPTS = 2500;
+    private static final long COSMETIC_STREAM = -1;
+
+    /** Rooms are small, medium or large, with these chances and dimensions. */
+    static final RandomUtils.DiscreteSampler ROOM_SIZES =
+            RandomUtils.sampler(new double[]{0.2, 0.2, 0.6});
+    static final int[] ROOM_MIN_DIMENSIONS = new int[]{4, 6, 7};
+    static final int[] ROOM_MAX_DIMENSIONS = new int[]{6, 8, 12};
+
+    private TileGrid world;
     private RoomCollection rooms;
     private HallwayCollection hallways;
     private Builder build;
@@ -63,36 +92,130 @@ public class World implements java.io.Serializable {
     private Energy energy;
     private int width;
     private int height;
-    private Random random;
+    private Random[] stageRandoms;
+    private Random cosmeticRandom;
+    private boolean legacyLayout;
+    private int placementAttempts;
+    private int[] placedAt;
+    private long[] stageTimes;
+    private long version;
+    private long opacityVersion;
+    private transient PositionSet changedTiles;
 
     World(int width, int height, long seed) {
+        this(width, height, seed, false);
+    }
+
+    /**
+     * @param width : The width of the world.
+     * @param height : The height of the world.
+     * @param seed : The seed the world is generated from.
+     * @param legacyLayout : Whether to chain rooms together in order of distance, as worlds
+     *                       were originally generated, rather than along a spanning tree.
+     */
+    World(int width, int height, long seed, boolean legacyLayout) {
+        this(width, height, seed, legacyLayout, false);
+    }
+
+    /**
+     * @param width : The width of the world.
+     * @param height : The height of the world.
+     * @param seed : The seed the world is generated from.
+     * @param legacyLayout : Whether to chain rooms together in order of distance, as worlds
+     *                       were originally generated, rather than along a spanning tree.
+     * @param offHeap : Whether to keep the tiles off-heap, for very large worlds. An off-heap
+     *                  world should be closed once it is no longer needed.
+     */
+    World(int width, int height, long seed, boolean legacyLayout, boolean offHeap) {
+        this.legacyLayout = legacyLayout;
         this.width  = width;
         this.height = height;
-        this.random = new Random(seed);
-        this.world = new TETile[width][height];
+        this.stageRandoms = new Random[GenerationStage.values().length];
+        this.cosmeticRandom = StreamRandom.of(seed, COSMETIC_STREAM);
+        Random shared = new Random(seed);
+        for (GenerationStage stage : GenerationStage.values()) {
+            stageRandoms[stage.ordinal()] = legacyLayout ? shared
+                    : StreamRandom.of(seed, stage.ordinal());
+        }
+        this.world = offHeap ? TileGrid.offHeap(width, height, EMPTY)
+                : new TileGrid(width, height, EMPTY);
         this.build = new Builder(this);
         this.trap = new Trap(TRAP);
         this.energy = new Energy(ENERGY);
+        this.stageTimes = new long[GenerationStage.values().length];
+
+        runStage(GenerationStage.PLACE, this::generateRooms);
+        runStage(GenerationStage.ORDER, this::orderRooms);
+        runStage(GenerationStage.CARVE_ROOMS, () -> build.buildRooms(rooms));
+        runStage(GenerationStage.CARVE_HALLWAYS, this::generateHallways);
+        runStage(GenerationStage.WALLS, this::generateWalls);
+        runStage(GenerationStage.TRAPS, () -> build.placeTraps(TRAP_FREQUENCY));
+        runStage(GenerationStage.ENERGY, () -> build.placeEnergy(ENERGY_FREQUENCY));
+        runStage(GenerationStage.SPAWN, this::generatePlayer);
+    }
 
-        for (int x = 0; x < width; x += 1) {
-            for (int y = 0; y < height; y += 1) {
-                changeTile(new Point(x, y), EMPTY);
-            }
+    /**
+     * Free the tiles of the world. This matters for off-heap worlds, whose memory is otherwise
+     * only freed once the world is garbage collected. The world cannot be used afterwards.
+     */
+    @Override
+    public void close() {
+        world.close();
+    }
+
+    /**
+     * Run a single generation stage, recording how long it took.
+     *
+     * @param stage : The stage being run.
+     * @param body : The work of the stage.
+     */
+    private void runStage(GenerationStage stage, Runnable body) {
+        long start = System.nanoTime();
+        body.run();
+        stageTimes[stage.ordinal()] = System.nanoTime() - start;
+    }
+
+    /**
+     * @return : Whether this world was generated with the legacy layout.
+     */
+    public boolean isLegacyLayout() {
+        return legacyLayout;
+    }
+
+    /**
+     * @param stage : A generation stage.
+     * @return : The wall-clock time the stage took, in nanoseconds.
+     */
+    public long getStageTime(GenerationStage stage) {
+        return stageTimes[stage.ordinal()];
+    }
+
+    /**
+     * @return : A summary of the time each generation stage took, one stage per line.
+     */
+    public String reportStageTimes() {
+        StringBuilder report = new StringBuilder();
+
+        for (GenerationStage stage : GenerationStage.values()) {
+            report.append(String.format("%-15s %8.3f ms%n", stage.description(),
+                    getStageTime(stage) / 1e6));
         }
+        return report.toString();
+    }
 
-        generateRooms();
-        generateHallways();
-        generateWalls();
-        build.placeTraps(0.25);
-        build.placeEnergy(0.01);
-        generatePlayer();
+    /**
+     * @return : The world's tile grid. Tiles set on it directly are not seen by getVersion, so
+     *           once the world is generated, tiles should be changed through changeTile.
+     */
+    public TileGrid getTileGrid() {
+        return world;
     }
 
     /**
-     * @return : The world's tile array.
+     * @return : A copy of the world's tiles as an array, for code which works with arrays.
      */
     public TETile[][] getTileArray() {
-        return world;
+        return world.toArray();
     }
 
     /**
@@ -102,7 +225,7 @@ public class World implements java.io.Serializable {
         return rooms;
     }
 
-    public LinkedList<Point> getWallTiles() {
+    public PositionSet getWallTiles() {
         return build.getWallTiles();
     }
 
@@ -161,86 +284,145 @@ public class World implements java.io.Serializable {
     }
 
     /**
-     * @return : The random object whose seed was created by the user.
+     * Each generation stage draws from its own stream of random numbers, derived from the seed
+     * entered by the user and the stage, so the numbers one stage draws never change those of
+     * another. Legacy worlds instead share a single java.util.Random between every stage, in
+     * the order the stages run, as they always have.
+     *
+     * @param stage : A generation stage.
+     * @return : The random object for the given stage.
      */
-    public Random getRandom() {
-        return random;
+    public Random getRandom(GenerationStage stage) {
+        return stageRandoms[stage.ordinal()];
+    }
+
+    /**
+     * @return : The random object for purely visual effects, such as static and transition
+     *           tiles. It is separate from those used for generation, so drawing a frame never
+     *           changes the world.
+     */
+    public Random getCosmeticRandom() {
+        return cosmeticRandom;
     }
 
     /**
      * Generate all rooms for the world. For a description of how this is done, see the
-     * class informational heading.
+     * class informational heading. The attempt on which each room was placed is recorded for
+     * ordering the rooms afterwards.
      */
     private void generateRooms() {
+        rooms = new RoomCollection();
+        placementAttempts = ROOM_ATTEMPTS;
+        placedAt = new int[ROOM_ATTEMPTS];
+        placeRooms(rooms, getRandom(GenerationStage.PLACE), ROOM_ATTEMPTS, width, height,
+                legacyLayout, placedAt);
+    }
+
+    /**
+     * Randomly place rooms within an area, keeping a one tile margin from its edges. This is the
+     * place stage of both worlds and chunks (see Chunk).
+     *
+     * @param rooms : The collection the rooms are added to.
+     * @param random : The random object for placing rooms.
+     * @param attempts : The number of placement attempts.
+     * @param areaWidth : The width of the area.
+     * @param areaHeight : The height of the area.
+     * @param legacySizes : Whether to choose room sizes as legacy worlds always have.
+     * @param placedAt : Given the attempt on which each room was placed, or null.
+     */
+    static void placeRooms(RoomCollection rooms, Random random, int attempts, int areaWidth,
+                           int areaHeight, boolean legacySizes, int[] placedAt) {
         int roomWidth, roomHeight, roomPosX, roomPosY, minDimension, maxDimension;
-        double rand;
 
-        rooms = new RoomCollection();
-        int maxAttempts = 2500;
-
-        // Randomly place rooms in the world. Based on a random number between 0 and 1,
-        // each room is made either small, medium, or large. If this new room does not intersect
-        // with any previously placed rooms, add the room to the overall collection of rooms, and
-        // generate the room.
-        for (int i = 0; i < maxAttempts; i += 1) {
-            rand = random.nextDouble();
-
-            if (rand < 0.2) {
-                minDimension = 4;
-                maxDimension = 6;
-            } else if (rand < 0.4) {
-                minDimension = 6;
-                maxDimension = 8;
-            } else {
-                minDimension = 7;
-                maxDimension = 12;
-            }
+        // Randomly place rooms in the world. Each room is made either small, medium, or large.
+        // If this new room does not intersect with any previously placed rooms, add the room to
+        // the overall collection of rooms, and generate the room.
+        for (int i = 0; i < attempts; i += 1) {
+            int size = legacySizes ? legacyRoomSize(random) : ROOM_SIZES.sample(random);
+            minDimension = ROOM_MIN_DIMENSIONS[size];
+            maxDimension = ROOM_MAX_DIMENSIONS[size];
 
             roomWidth  = minDimension + random.nextInt(maxDimension - minDimension + 1);
             roomHeight = minDimension + random.nextInt(maxDimension - minDimension + 1);
-            roomPosX = random.nextInt(width - roomWidth - 1) + 1;
-            roomPosY = random.nextInt(height - roomHeight - 1) + 1;
+            roomPosX = random.nextInt(areaWidth - roomWidth - 1) + 1;
+            roomPosY = random.nextInt(areaHeight - roomHeight - 1) + 1;
 
             Room newRoom = new Room(roomPosX, roomPosY, roomWidth, roomHeight);
-            boolean intersects = false;
-
-            for (int j = 0; j < rooms.size(); j += 1) {
-                if (rooms.get(j).intersects(newRoom)) {
-                    intersects = true;
-                    break;
-                }
 
-                // Ensure rooms are offset.
-                if (rooms.get(j).getCenter().getX() == newRoom.getCenter().getX()
-                        || rooms.get(j).getCenter().getY() == newRoom.getCenter().getY()) {
-                    intersects = true;
-                    break;
+            // Ensure the new room neither intersects nor is aligned with a placed room.
+            if (!rooms.getIndex().conflicts(newRoom)) {
+                if (placedAt != null) {
+                    placedAt[rooms.size()] = i;
                 }
-            }
-
-            if (!intersects) {
                 rooms.add(newRoom);
             }
+        }
+    }
+
+    /**
+     * Choose the size of a room as legacy worlds always have, by comparing a single random number
+     * between 0 and 1 against the cumulative chance of each size.
+     *
+     * @param random : The random object for placing rooms.
+     * @return : The size of the room, as an index into the room dimensions.
+     */
+    private static int legacyRoomSize(Random random) {
+        double rand = random.nextDouble();
 
-            rooms.sortByDistance();
-            build.buildRooms(rooms);
+        if (rand < 0.2) {
+            return 0;
+        } else if (rand < 0.4) {
+            return 1;
         }
+        return 2;
     }
 
     /**
-     * Generate all the hallways for the world.
+     * Order the placed rooms by distance so that hallways can chain them together. Only legacy
+     * layouts chain their rooms, so the rooms are otherwise left in placement order.
      */
-    private void generateHallways() {
-        hallways = new HallwayCollection();
+    private void orderRooms() {
+        if (legacyLayout) {
+            rooms.sortByDistance(placedAt, placementAttempts);
+        }
+        placedAt = null;
+    }
 
-        for (int room = 0; room < rooms.size() - 1; room += 1) {
-            Room current = rooms.get(room);
-            Room neighbor = rooms.get(room + 1);
-            hallways.add(new Hallway(current.getCenter(), neighbor.getCenter()));
+    /**
+     * Generate all the hallways for the world. For a legacy layout, the ordered rooms are chained
+     * together. Otherwise, the rooms are joined along a minimum spanning tree, with a few extra
+     * hallways to form loops (see HallwayPlanner).
+     */
+    private void generateHallways() {
+        if (legacyLayout) {
+            hallways = HallwayPlanner.chain(rooms);
+        } else {
+            hallways = planHallways(rooms);
         }
         build.buildHallways(hallways);
     }
 
+    /**
+     * Choose a random type of wall, for both worlds and chunks.
+     *
+     * @param random : The random object choosing the type of wall.
+     * @return : The wall tile.
+     */
+    static TETile decorativeWall(Random random) {
+        return DECORATIVETILES[DECORATIVEVARIANTS.sample(random)];
+    }
+
+    /**
+     * Plan the hallways joining the given rooms along a minimum spanning tree, with one extra
+     * hallway for every LOOP_DIVISOR rooms. This is how both worlds and chunks are joined.
+     *
+     * @param rooms : The rooms to join.
+     * @return : The hallways.
+     */
+    static HallwayCollection planHallways(RoomCollection rooms) {
+        return HallwayPlanner.spanningTree(rooms, rooms.size() / LOOP_DIVISOR);
+    }
+
     private void generateWalls() {
         build.buildWalls();
     }
@@ -266,10 +448,10 @@ public class World implements java.io.Serializable {
         TETile oldAbove = player.getAbove();
 
         // Check if the new tile is a trap. If so, decrement the player's lives.
-        if (getTile(newPosition).equals(trap.getTile())) {
+        if (trap.removeTrap(newPosition)) {
             player.decrementLives();
             changeTile(newPosition, getFloor());
-        } else if (getTile(newPosition).equals(energy.getTile()) && player.isDigital()) {
+        } else if (player.isDigital() && energy.removeEnergy(newPosition)) {
             playerBuddy.addCharge();
             changeTile(newPosition, getFloor());
         }
@@ -297,7 +479,6 @@ public class World implements java.io.Serializable {
      */
     public void addTrap(Point position) {
         changeTile(position, trap.getTile());
-        trap.addTrap(position);
     }
 
     /**
@@ -307,23 +488,24 @@ public class World implements java.io.Serializable {
      */
     public void addEnergy(Point position) {
         changeTile(position, energy.getTile());
-        energy.addEnergy(position);
     }
 
     /**
      * Demolish all of the traps in the world and replace them with floor tiles.
      */
     public void demolishTraps() {
-        build.demolishAllTraps(trap.getAllTraps());
+        PositionSet traps = trap.getAllTraps();
         trap.removeAllTraps();
+        build.demolishAllTraps(traps);
     }
 
     /**
      * Demolish all of the energys in the world and replace them with floor tiles.
      */
     public void demolishEnergys() {
-        build.demolishAllEnergys(energy.getAllEnergys());
+        PositionSet energys = energy.getAllEnergys();
         energy.removeAllEnergys();
+        build.demolishAllEnergys(energys);
     }
 
     /**
@@ -333,7 +515,83 @@ public class World implements java.io.Serializable {
      * @param newTile : The new tile.
      */
     public void changeTile(Point position, TETile newTile) {
-        world[position.getX()][position.getY()] = newTile;
+        changeTile(position.getX(), position.getY(), newTile);
+    }
+
+    /**
+     * Change the tile at the given coordinates to the given tile.
+     *
+     * @param x : The x-coordinate to change.
+     * @param y : The y-coordinate to change.
+     * @param newTile : The new tile.
+     */
+    public void changeTile(int x, int y, TETile newTile) {
+        boolean blockedSight = blocksSight(x, y);
+        world.set(x, y, newTile);
+        version += 1;
+        if (blocksSight(x, y) != blockedSight) {
+            opacityVersion += 1;
+        }
+        if (changedTiles != null) {
+            changedTiles.add(x, y);
+        }
+
+        // Keep the trap and energy positions matching the tiles. A trap covered by the buddy is
+        // not there until the buddy moves off of it, just as when traps were found by tile.
+        int id = world.getId(x, y);
+        if (id == TRAPID) {
+            trap.getAllTraps().add(x, y);
+        } else {
+            trap.getAllTraps().remove(x, y);
+        }
+        if (id == ENERGYID) {
+            energy.getAllEnergys().add(x, y);
+        } else {
+            energy.getAllEnergys().remove(x, y);
+        }
+    }
+
+    /**
+     * @return : A number which changes whenever a tile is changed through changeTile.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return : A number which changes whenever a tile is changed through changeTile such that
+     *           it starts or stops blocking sight. What can be seen from any position only
+     *           changes along with it.
+     */
+    public long getOpacityVersion() {
+        return opacityVersion;
+    }
+
+    /**
+     * Start remembering which tiles are changed through changeTile, forgetting any changes
+     * remembered so far. Changes are not remembered until this is called, so that generating
+     * the world does not record every one of its tiles.
+     */
+    void trackChanges() {
+        if (changedTiles == null) {
+            changedTiles = new PositionSet();
+        } else {
+            changedTiles.clear();
+        }
+    }
+
+    /**
+     * Visit every tile changed since changes were last tracked or visited, and then forget them.
+     * Each position is given to the action packed into an int (see Point.pack).
+     *
+     * @param action : The action taking each packed position.
+     */
+    void forEachChangedTile(IntConsumer action) {
+        if (changedTiles == null) {
+            throw new IllegalStateException("changes are not being tracked");
+        }
+        changedTiles.forEach(action);
+        changedTiles.clear();
     }
 
     /**
@@ -343,6 +601,40 @@ public class World implements java.io.Serializable {
      * @return : The tile at the given position.
      */
     public TETile getTile(Point position) {
-        return world[position.getX()][position.getY()];
+        return world.get(position.getX(), position.getY());
+    }
+
+    /**
+     * Retrieve the tile at the given coordinates.
+     *
+     * @param x : The x-coordinate of the wanted tile.
+     * @param y : The y-coordinate of the wanted tile.
+     * @return : The tile at the given coordinates.
+     */
+    public TETile getTile(int x, int y) {
+        return world.get(x, y);
+    }
+
+    /**
+     * Check whether the tile at the given coordinates blocks the player's line of sight. Every
+     * kind of wall does, whatever its decoration.
+     *
+     * @param x : The x-coordinate of the tile.
+     * @param y : The y-coordinate of the tile.
+     * @return : Whether the tile blocks sight.
+     */
+    public boolean blocksSight(int x, int y) {
+        return TileProperties.has(world.getId(x, y), TileProperties.OPAQUE);
+    }
+
+    /**
+     * Check whether the player can walk onto the tile at the given coordinates.
+     *
+     * @param x : The x-coordinate of the tile.
+     * @param y : The y-coordinate of the tile.
+     * @return : Whether the tile can be walked on.
+     */
+    public boolean isPassable(int x, int y) {
+        return TileProperties.has(world.getId(x, y), TileProperties.PASSABLE);
     }
 }
@@ -0,0 +1,146 @@
+package byog.Core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.LongStream;
+
+/**
+ * Generates many worlds at once across a fork-join pool. This is meant for generating and
+ * checking large numbers of seeds offline, rather than for playing the game.
+ *
+ * Every world is built by its own call to the World constructor, so each has its own random
+ * object and tile array, and a world generated here is identical to one constructed serially
+ * from the same seed. Worlds are handed to a callback as soon as they are available and are not
+ * kept by the factory, so a caller that only records a summary of each world keeps memory flat
+ * however many seeds are generated.
+ */
+public class WorldFactory implements AutoCloseable {
+    /** Consumes a generated world along with the seed that generated it. */
+    public interface WorldConsumer {
+        void accept(long seed, World world);
+    }
+
+    private final int width;
+    private final int height;
+    private final ForkJoinPool pool;
+    private final int batchSize;
+
+    public WorldFactory(int width, int height) {
+        this(width, height, Runtime.getRuntime().availableProcessors());
+    }
+
+    public WorldFactory(int width, int height, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.width = width;
+        this.height = height;
+        this.pool = new ForkJoinPool(parallelism);
+        this.batchSize = parallelism * 4;
+    }
+
+    /**
+     * Generate a world for every seed from first (inclusive) to last (exclusive).
+     *
+     * @param first : The first seed.
+     * @param last : The seed after the last seed.
+     * @param inSeedOrder : Whether the consumer must receive the worlds in seed order.
+     * @param consumer : Receives each world once it has been generated.
+     */
+    public void generate(long first, long last, boolean inSeedOrder, WorldConsumer consumer) {
+        generate(LongStream.range(first, last), inSeedOrder, consumer);
+    }
+
+    /**
+     * Generate a world for every seed in the given stream.
+     *
+     * If the worlds are wanted in seed order, seeds are generated a batch at a time and then
+     * handed to the consumer in order from the calling thread. Otherwise, the consumer is called
+     * from the pool's threads as each world finishes, and so may be called concurrently.
+     *
+     * @param seeds : The seeds to generate worlds for.
+     * @param inSeedOrder : Whether the consumer must receive the worlds in seed order.
+     * @param consumer : Receives each world once it has been generated.
+     */
+    public void generate(LongStream seeds, boolean inSeedOrder, WorldConsumer consumer) {
+        if (inSeedOrder) {
+            generateOrdered(seeds.iterator(), consumer);
+        } else {
+            await(pool.submit(() -> seeds.parallel().forEach(seed ->
+                    consumer.accept(seed, new World(width, height, seed)))));
+        }
+    }
+
+    /**
+     * Generate a world for every seed from first (inclusive) to last (exclusive), keeping them.
+     *
+     * @param first : The first seed.
+     * @param last : The seed after the last seed.
+     * @return : The generated worlds, in seed order.
+     */
+    public List<World> generateAll(long first, long last) {
+        List<World> worlds = new ArrayList<>();
+        generate(first, last, true, (seed, world) -> worlds.add(world));
+        return worlds;
+    }
+
+    /**
+     * Generate the worlds a batch at a time, handing each batch to the consumer in seed order
+     * before the next is started.
+     *
+     * @param seeds : The seeds to generate worlds for.
+     * @param consumer : Receives each world, in seed order.
+     */
+    private void generateOrdered(PrimitiveIterator.OfLong seeds, WorldConsumer consumer) {
+        long[] batchSeeds = new long[batchSize];
+        List<Callable<World>> tasks = new ArrayList<>(batchSize);
+
+        while (seeds.hasNext()) {
+            tasks.clear();
+
+            for (int i = 0; i < batchSize && seeds.hasNext(); i += 1) {
+                long seed = seeds.nextLong();
+                batchSeeds[i] = seed;
+                tasks.add(() -> new World(width, height, seed));
+            }
+
+            List<Future<World>> results = pool.invokeAll(tasks);
+            for (int i = 0; i < results.size(); i += 1) {
+                consumer.accept(batchSeeds[i], await(results.get(i)));
+            }
+        }
+    }
+
+    /**
+     * Wait for a task to finish, rethrowing anything thrown by it.
+     *
+     * @param task : The task to wait for.
+     * @return : The result of the task.
+     */
+    private static <T> T await(Future<T> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while generating worlds", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new IllegalStateException("world generation failed", ex.getCause());
+        }
+    }
+
+    /**
+     * Shut down the pool used for generation.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,509 @@
+package byog.Core;
+
+import byog.TileEngine.ByteGrid;
+import byog.TileEngine.TETile;
+import byog.TileEngine.TileGrid;
+import byog.TileEngine.TilePalette;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * Saves and loads a game environment as a binary world file, which is memory-mapped when loaded.
+ *
+ * Rather than writing every tile as part of the environment's object graph, the file is laid out
+ * in fixed regions, each starting on a page boundary:
+ *   - A header, giving the position and size of every other region.
+ *   - The tile palette: every tile used, so that tile IDs can be matched with this run's IDs.
+ *   - One region per grid of the environment (the world's tiles, both view layers and the seen
+ *     brightness), holding the grid's cells in the same row-major order as TileGrid.
+ *   - One region per entity table (the traps and energy), holding packed positions.
+ *   - The rest of the environment (the player, rooms, and so on) as a serialized object graph,
+ *     in which each grid and entity table is only a reference to its region.
+ *
+ * Loading maps the file and wraps each grid's region directly (see TileGrid.wrap), rather than
+ * reading the cells. The operating system only reads in the pages of the file which are
+ * actually used, such as those around the player, so loading costs little more than reading the
+ * header and object graph however large the world is. The file is mapped read-only, so it need
+ * not be writable, and a grid copies its region into memory of its own the first time it is
+ * changed. Changes made while playing never reach the file until the game is saved again.
+ *
+ * Should the tile IDs of this run differ from those the file was saved with, the tile regions
+ * are copied with this run's IDs as they are loaded, which does read every tile.
+ *
+ * Windows will not replace a file while any part of it is mapped, and a mapping lasts until it
+ * is garbage collected, so a game loaded from a file could not then be saved over it. On Windows,
+ * the file is therefore read into memory as a whole rather than mapped.
+ */
+public class WorldFile {
+    private static final int MAGIC = 0x42594F47;
+    private static final int VERSION = 1;
+    private static final int PAGE = 4096;
+    private static final int HEADER_FIXED = 48;
+    private static final int GRID_ENTRY = 24;
+    private static final int TABLE_ENTRY = 16;
+    private static final int TILE_GRID = 0;
+    private static final int BYTE_GRID = 1;
+    private static final int BATCH = 1 << 16;
+    private static final boolean MAP_FILES =
+            !System.getProperty("os.name", "").startsWith("Windows");
+
+    private WorldFile() {
+    }
+
+    /**
+     * Save the environment to the given file, replacing anything already there.
+     *
+     * @param path : The file to save to.
+     * @param environment : The environment to save.
+     * @throws IOException : If the file could not be written.
+     */
+    public static void save(Path path, Environment environment) throws IOException {
+        ArrayList<Object> grids = new ArrayList<>();
+        ArrayList<PositionSet> tables = new ArrayList<>();
+
+        ByteArrayOutputStream state = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new SplittingOutputStream(state, grids, tables)) {
+            out.writeObject(environment);
+        }
+        byte[] palette = serialize(usedTiles(grids));
+
+        // Lay out the regions.
+        long headerLength = HEADER_FIXED + (long) grids.size() * GRID_ENTRY
+                + (long) tables.size() * TABLE_ENTRY;
+        long paletteOffset = align(headerLength);
+        long position = align(paletteOffset + palette.length);
+
+        long[] gridOffsets = new long[grids.size()];
+        for (int i = 0; i < grids.size(); i += 1) {
+            gridOffsets[i] = position;
+            position = align(position + gridBytes(grids.get(i)));
+        }
+        long[] tableOffsets = new long[tables.size()];
+        for (int i = 0; i < tables.size(); i += 1) {
+            tableOffsets[i] = position;
+            position = align(position + (long) tables.get(i).size() * Integer.BYTES);
+        }
+        long stateOffset = position;
+        long length = stateOffset + state.size();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("world too large to save: " + length + " bytes");
+        }
+
+        ByteBuffer header = ByteBuffer.allocate((int) headerLength).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(0, MAGIC);
+        header.putInt(4, VERSION);
+        header.putInt(8, grids.size());
+        header.putInt(12, tables.size());
+        header.putLong(16, paletteOffset);
+        header.putInt(24, palette.length);
+        header.putLong(32, stateOffset);
+        header.putInt(40, state.size());
+
+        int entry = HEADER_FIXED;
+        for (int i = 0; i < grids.size(); i += 1) {
+            Object grid = grids.get(i);
+            boolean tiles = grid instanceof TileGrid;
+            header.putInt(entry, tiles ? TILE_GRID : BYTE_GRID);
+            header.putInt(entry + 4, tiles ? ((TileGrid) grid).getWidth()
+                    : ((ByteGrid) grid).getWidth());
+            header.putInt(entry + 8, tiles ? ((TileGrid) grid).getHeight()
+                    : ((ByteGrid) grid).getHeight());
+            header.putLong(entry + 16, gridOffsets[i]);
+            entry += GRID_ENTRY;
+        }
+        for (int i = 0; i < tables.size(); i += 1) {
+            header.putInt(entry, tables.get(i).size());
+            header.putLong(entry + 8, tableOffsets[i]);
+            entry += TABLE_ENTRY;
+        }
+
+        // The environment may itself have been loaded from this file, and still be reading its
+        // pages, so a new file is written and then moved over the old one. The new file is
+        // written rather than mapped, so that no mapping of it outlives the save.
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel, header, 0);
+            write(channel, ByteBuffer.wrap(palette), paletteOffset);
+
+            for (int i = 0; i < grids.size(); i += 1) {
+                if (grids.get(i) instanceof TileGrid) {
+                    writeTiles(channel, gridOffsets[i], (TileGrid) grids.get(i));
+                } else {
+                    writeBytes(channel, gridOffsets[i], (ByteGrid) grids.get(i));
+                }
+            }
+            for (int i = 0; i < tables.size(); i += 1) {
+                ByteBuffer table = ByteBuffer.allocate(tables.get(i).size() * Integer.BYTES)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                tables.get(i).forEach(table::putInt);
+                table.flip();
+                write(channel, table, tableOffsets[i]);
+            }
+            write(channel, ByteBuffer.wrap(state.toByteArray()), stateOffset);
+            channel.force(true);
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Load an environment saved by save.
+     *
+     * @param path : The file to load from.
+     * @return : The environment.
+     * @throws IOException : If the file could not be read, or is not a world file.
+     */
+    public static Environment load(Path path) throws IOException {
+        return load(path, MAP_FILES);
+    }
+
+    /**
+     * Load an environment saved by save, either mapping the file or reading it into memory.
+     *
+     * @param path : The file to load from.
+     * @param map : Whether to map the file, rather than read it.
+     * @return : The environment.
+     * @throws IOException : If the file could not be read, or is not a world file.
+     */
+    static Environment load(Path path, boolean map) throws IOException {
+        ByteBuffer file;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_FIXED || channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("not a world file: " + path);
+            }
+            if (map) {
+                file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            } else {
+                file = read(channel);
+            }
+        }
+        file.order(ByteOrder.LITTLE_ENDIAN);
+
+        if (file.getInt(0) != MAGIC || file.getInt(4) != VERSION) {
+            throw new IOException("not a world file: " + path);
+        }
+        int gridCount = file.getInt(8);
+        int tableCount = file.getInt(12);
+        if (gridCount < 0 || tableCount < 0) {
+            throw new IOException("corrupt world file: " + path);
+        }
+        region(file, 0, HEADER_FIXED + (long) gridCount * GRID_ENTRY
+                + (long) tableCount * TABLE_ENTRY);
+
+        // Every size and offset below is read from the file, so each region is checked to lie
+        // within the file before it is used (see region).
+        try {
+            TETile[] palette = (TETile[]) deserialize(file, file.getLong(16), file.getInt(24));
+            short[] remap = new short[palette.length];
+            boolean same = true;
+            for (int id = 0; id < palette.length; id += 1) {
+                remap[id] = (short) (palette[id] == null ? 0 : TilePalette.idOf(palette[id]));
+                same &= palette[id] == null || remap[id] == id;
+            }
+
+            Object[] grids = new Object[gridCount];
+            int entry = HEADER_FIXED;
+            for (int i = 0; i < gridCount; i += 1) {
+                int kind = file.getInt(entry);
+                int width = file.getInt(entry + 4);
+                int height = file.getInt(entry + 8);
+                if ((kind != TILE_GRID && kind != BYTE_GRID) || width <= 0 || height <= 0) {
+                    throw new IOException("corrupt world file: " + path);
+                }
+                ByteBuffer region = region(file, file.getLong(entry + 16),
+                        (long) width * height * (kind == TILE_GRID ? Short.BYTES : 1));
+                entry += GRID_ENTRY;
+
+                if (kind == TILE_GRID) {
+                    TileGrid tiles = TileGrid.wrap(width, height, region);
+                    if (!same) {
+                        remapTiles(tiles, remap);
+                    }
+                    grids[i] = tiles;
+                } else {
+                    grids[i] = ByteGrid.wrap(width, height, region);
+                }
+            }
+
+            PositionSet[] tables = new PositionSet[tableCount];
+            for (int i = 0; i < tableCount; i += 1) {
+                int count = file.getInt(entry);
+                if (count < 0) {
+                    throw new IOException("corrupt world file: " + path);
+                }
+                ByteBuffer table = region(file, file.getLong(entry + 8),
+                        (long) count * Integer.BYTES);
+                entry += TABLE_ENTRY;
+
+                tables[i] = new PositionSet();
+                for (int j = 0; j < count; j += 1) {
+                    int packed = table.getInt(j * Integer.BYTES);
+                    tables[i].add(Point.unpackX(packed), Point.unpackY(packed));
+                }
+            }
+
+            ByteBuffer stateRegion = region(file, file.getLong(32), file.getInt(40));
+            byte[] state = new byte[stateRegion.remaining()];
+            stateRegion.get(state);
+            try (ObjectInputStream in = new JoiningInputStream(new ByteArrayInputStream(state),
+                    grids, tables)) {
+                return (Environment) in.readObject();
+            }
+        } catch (ClassNotFoundException | ClassCastException | IndexOutOfBoundsException
+                | IllegalArgumentException ex) {
+            throw new IOException("corrupt world file: " + path, ex);
+        }
+    }
+
+    /**
+     * Read the whole of a file into memory, for where it cannot be mapped.
+     *
+     * @param channel : The file.
+     * @return : The contents of the file.
+     * @throws IOException : If the file could not be read.
+     */
+    private static ByteBuffer read(FileChannel channel) throws IOException {
+        ByteBuffer file = ByteBuffer.allocateDirect((int) channel.size());
+        while (file.hasRemaining()) {
+            if (channel.read(file, file.position()) < 0) {
+                throw new IOException("world file ended early");
+            }
+        }
+        file.flip();
+        return file;
+    }
+
+    /**
+     * @return : Every tile used by the tile grids, indexed by tile ID.
+     */
+    private static TETile[] usedTiles(ArrayList<Object> grids) {
+        int maxId = 0;
+        for (Object grid : grids) {
+            if (grid instanceof TileGrid) {
+                TileGrid tiles = (TileGrid) grid;
+                short[] row = new short[tiles.getWidth()];
+                for (int y = 0; y < tiles.getHeight(); y += 1) {
+                    tiles.readRow(y, row, 0);
+                    for (short id : row) {
+                        maxId = Math.max(maxId, id);
+                    }
+                }
+            }
+        }
+
+        TETile[] used = new TETile[maxId + 1];
+        for (int id = 0; id <= maxId; id += 1) {
+            used[id] = TilePalette.tileOf(id);
+        }
+        return used;
+    }
+
+    /**
+     * Write the cells of a tile grid to the file, a batch of rows at a time.
+     */
+    private static void writeTiles(FileChannel channel, long offset, TileGrid grid)
+            throws IOException {
+        short[] row = new short[grid.getWidth()];
+        int rowBytes = row.length * Short.BYTES;
+        ByteBuffer batch = ByteBuffer.allocate(Math.max(rowBytes, BATCH - BATCH % rowBytes))
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        for (int y = 0; y < grid.getHeight(); y += 1) {
+            if (batch.remaining() < rowBytes) {
+                batch.flip();
+                offset += write(channel, batch, offset);
+                batch.clear();
+            }
+            grid.readRow(y, row, 0);
+            batch.asShortBuffer().put(row);
+            batch.position(batch.position() + rowBytes);
+        }
+        batch.flip();
+        write(channel, batch, offset);
+    }
+
+    /**
+     * Write the cells of a byte grid to the file, a batch of rows at a time.
+     */
+    private static void writeBytes(FileChannel channel, long offset, ByteGrid grid)
+            throws IOException {
+        byte[] row = new byte[grid.getWidth()];
+        ByteBuffer batch = ByteBuffer.allocate(Math.max(row.length,
+                BATCH - BATCH % row.length));
+
+        for (int y = 0; y < grid.getHeight(); y += 1) {
+            if (batch.remaining() < row.length) {
+                batch.flip();
+                offset += write(channel, batch, offset);
+                batch.clear();
+            }
+            grid.readRow(y, row, 0);
+            batch.put(row);
+        }
+        batch.flip();
+        write(channel, batch, offset);
+    }
+
+    /**
+     * Write all of the given buffer to the file at the given position.
+     *
+     * @return : The number of bytes written.
+     */
+    private static int write(FileChannel channel, ByteBuffer buffer, long position)
+            throws IOException {
+        int length = buffer.remaining();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        return length;
+    }
+
+    /**
+     * Rewrite the tile IDs of a grid with this run's IDs, a row at a time.
+     */
+    private static void remapTiles(TileGrid grid, short[] remap) {
+        short[] row = new short[grid.getWidth()];
+        for (int y = 0; y < grid.getHeight(); y += 1) {
+            grid.readRow(y, row, 0);
+            for (int x = 0; x < row.length; x += 1) {
+                row[x] = remap[row[x]];
+            }
+            grid.writeRow(y, row, 0);
+        }
+    }
+
+    private static long gridBytes(Object grid) {
+        if (grid instanceof TileGrid) {
+            TileGrid tiles = (TileGrid) grid;
+            return (long) tiles.getWidth() * tiles.getHeight() * Short.BYTES;
+        }
+        ByteGrid bytes = (ByteGrid) grid;
+        return (long) bytes.getWidth() * bytes.getHeight();
+    }
+
+    private static long align(long position) {
+        return (position + PAGE - 1) / PAGE * PAGE;
+    }
+
+    private static byte[] serialize(Object object) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(object);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Find a region of the file, as a little-endian buffer. This stands in for
+     * ByteBuffer.slice(int, int), which JDKs before 13 lack.
+     *
+     * @param file : The file.
+     * @param offset : The position of the region in the file.
+     * @param length : The length of the region in bytes.
+     * @return : The region.
+     * @throws IOException : If the region does not lie within the file.
+     */
+    private static ByteBuffer region(ByteBuffer file, long offset, long length)
+            throws IOException {
+        if (offset < 0 || length < 0 || offset > file.capacity() - length) {
+            throw new IOException("corrupt world file: " + length + " bytes at " + offset
+                    + " lie outside the file");
+        }
+        ByteBuffer region = file.duplicate();
+        region.position((int) offset);
+        region.limit((int) (offset + length));
+        return region.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static Object deserialize(ByteBuffer file, long offset, int length)
+            throws IOException, ClassNotFoundException {
+        ByteBuffer region = region(file, offset, length);
+        byte[] bytes = new byte[region.remaining()];
+        region.get(bytes);
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        }
+    }
+
+    /**
+     * Stands in for a grid or entity table in the saved object graph.
+     */
+    private static class RegionRef implements java.io.Serializable {
+        private final boolean grid;
+        private final int index;
+
+        RegionRef(boolean grid, int index) {
+            this.grid = grid;
+            this.index = index;
+        }
+    }
+
+    /**
+     * Writes an object graph with every grid and entity table replaced by a reference, keeping
+     * the replaced objects to be written to their own regions.
+     */
+    private static class SplittingOutputStream extends ObjectOutputStream {
+        private final ArrayList<Object> grids;
+        private final ArrayList<PositionSet> tables;
+
+        SplittingOutputStream(OutputStream out, ArrayList<Object> grids,
+                              ArrayList<PositionSet> tables) throws IOException {
+            super(out);
+            this.grids = grids;
+            this.tables = tables;
+            enableReplaceObject(true);
+        }
+
+        @Override
+        protected Object replaceObject(Object object) {
+            if (object instanceof TileGrid || object instanceof ByteGrid) {
+                grids.add(object);
+                return new RegionRef(true, grids.size() - 1);
+            } else if (object instanceof PositionSet) {
+                tables.add((PositionSet) object);
+                return new RegionRef(false, tables.size() - 1);
+            }
+            return object;
+        }
+    }
+
+    /**
+     * Reads an object graph written by SplittingOutputStream, putting the loaded grids and
+     * entity tables back in place of their references.
+     */
+    private static class JoiningInputStream extends ObjectInputStream {
+        private final Object[] grids;
+        private final PositionSet[] tables;
+
+        JoiningInputStream(InputStream in, Object[] grids, PositionSet[] tables)
+                throws IOException {
+            super(in);
+            this.grids = grids;
+            this.tables = tables;
+            enableResolveObject(true);
+        }
+
+        @Override
+        protected Object resolveObject(Object object) {
+            if (object instanceof RegionRef) {
+                RegionRef ref = (RegionRef) object;
+                return ref.grid ? grids[ref.index] : tables[ref.index];
+            }
+            return object;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package byog.Core;
+
+import byog.TileEngine.TETile;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Checks that a game saved to a world file and loaded again is the game that was saved. The game
+ * is then played and saved over the very file it was loaded from, as Game does, and loaded once
+ * more. Files are both mapped and read into memory, as they are on Windows (see WorldFile).
+ * Last, files that are truncated or whose header is corrupt must be rejected with IOException.
+ *
+ * Run with "java byog.Core.WorldFileCheck". It exits with status 1 if any check fails.
+ */
+final class WorldFileCheck {
+    private static final int SEEDS = 5;
+    private static final int MOVES = 30;
+
+    /** Header fields to corrupt, as byte offsets into a world file. */
+    private static final int GRID_COUNT = 8;
+    private static final int TABLE_COUNT = 12;
+    private static final int PALETTE_OFFSET = 16;
+    private static final int STATE_LENGTH = 40;
+    private static final int GRID_KIND = 48;
+    private static final int GRID_WIDTH = 52;
+    private static final int GRID_OFFSET = 64;
+
+    private WorldFileCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path path = Files.createTempFile("world", ".bin");
+        int failures = 0;
+
+        try {
+            for (long seed = 0; seed < SEEDS; seed += 1) {
+                for (boolean map : new boolean[]{true, false}) {
+                    Environment saved = new Environment(new World(80, 50, seed));
+                    saved.calcEnvironments();
+                    WorldFile.save(path, saved);
+
+                    Environment loaded = WorldFile.load(path, map);
+                    failures += check("load", seed, map, saved, loaded);
+
+                    play(loaded);
+                    WorldFile.save(path, loaded);
+                    Environment reloaded = WorldFile.load(path, map);
+                    failures += check("save after load", seed, map, loaded, reloaded);
+                }
+            }
+
+            Environment saved = new Environment(new World(80, 50, 0));
+            saved.calcEnvironments();
+            WorldFile.save(path, saved);
+            byte[] good = Files.readAllBytes(path);
+            for (boolean map : new boolean[]{true, false}) {
+                failures += reject("truncated", path, map, Arrays.copyOf(good,
+                        good.length / 2));
+                failures += reject("grid count", path, map, corrupt(good, GRID_COUNT, 1 << 30));
+                failures += reject("table count", path, map, corrupt(good, TABLE_COUNT, -1));
+                failures += reject("palette offset", path, map,
+                        corrupt(good, PALETTE_OFFSET, good.length));
+                failures += reject("state length", path, map,
+                        corrupt(good, STATE_LENGTH, Integer.MAX_VALUE));
+                failures += reject("grid kind", path, map, corrupt(good, GRID_KIND, 7));
+                failures += reject("grid width", path, map, corrupt(good, GRID_WIDTH, -80));
+                failures += reject("grid offset", path, map,
+                        corrupt(good, GRID_OFFSET, good.length - 1));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+
+        System.out.println(failures == 0 ? "All checks passed." : failures + " checks failed.");
+        if (failures != 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Walk the player back and forth to the east and north, wherever it can go.
+     *
+     * @param environment : The environment to play in.
+     */
+    private static void play(Environment environment) {
+        World world = environment.getWorld();
+        for (int i = 0; i < MOVES; i += 1) {
+            Point position = world.getPlayer().getPosition();
+            int x = position.getX() + (i % 2 == 0 ? 1 : 0);
+            int y = position.getY() + (i % 2 == 1 ? 1 : 0);
+            if (world.isPassable(x, y)) {
+                world.movePlayer(new Point(x, y));
+            }
+            environment.calcEnvironments();
+        }
+    }
+
+    /**
+     * Overwrite one int of a world file.
+     *
+     * @param file : The contents of the file, which are left alone.
+     * @param offset : The position of the int.
+     * @param value : The value to write there.
+     * @return : A copy of the file with the int overwritten.
+     */
+    private static byte[] corrupt(byte[] file, int offset, int value) {
+        byte[] copy = file.clone();
+        ByteBuffer.wrap(copy).order(ByteOrder.LITTLE_ENDIAN).putInt(offset, value);
+        return copy;
+    }
+
+    /**
+     * @return : One if the given file contents load without an IOException, and zero otherwise.
+     */
+    private static int reject(String name, Path path, boolean map, byte[] contents)
+            throws IOException {
+        Files.write(path, contents);
+        try {
+            WorldFile.load(path, map);
+        } catch (IOException ex) {
+            return 0;
+        } catch (RuntimeException ex) {
+            System.out.println("FAILED corrupt " + name + (map ? ", mapped: " : ", read: ") + ex);
+            return 1;
+        }
+        System.out.println("FAILED corrupt " + name + (map ? ", mapped" : ", read") + " loaded");
+        return 1;
+    }
+
+    /**
+     * @return : One if the two environments show different tiles, and zero otherwise.
+     */
+    private static int check(String name, long seed, boolean map, Environment expected,
+                             Environment actual) {
+        boolean same = TETile.toString(expected.getWorld().getTileArray())
+                .equals(TETile.toString(actual.getWorld().getTileArray()))
+                && TETile.toString(expected.getCurrentWorld().toArray())
+                .equals(TETile.toString(actual.getCurrentWorld().toArray()));
+        if (!same) {
+            System.out.println("FAILED " + name + ": seed " + seed + (map ? ", mapped" : ", read"));
+            return 1;
+        }
+        return 0;
+    }
+}
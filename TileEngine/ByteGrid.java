@@ -0,0 +1,261 @@
+package byog.TileEngine;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A fixed-size grid of small values, one byte per cell, such as how brightly each tile is lit.
+ * Like TileGrid, cells are stored in a single flat array in row-major order, and the grid may
+ * be stored off-heap instead (see offHeap), in which case it should be closed once it is no
+ * longer needed. Using a closed grid throws an IllegalStateException.
+ */
+public class ByteGrid implements java.io.Serializable, AutoCloseable {
+    private final int width;
+    private final int height;
+    private final boolean offHeap;
+    private transient byte[] values;
+    private transient ByteBuffer memory;
+    private transient ByteBuffer direct;
+
+    /**
+     * Creates a grid with every cell set to 0.
+     * @param width the width of the grid
+     * @param height the height of the grid
+     */
+    public ByteGrid(int width, int height) {
+        this(width, height, false);
+    }
+
+    private ByteGrid(int width, int height, ByteBuffer direct) {
+        bytes(width, height);
+        this.width = width;
+        this.height = height;
+        this.offHeap = true;
+        this.direct = direct;
+    }
+
+    private ByteGrid(int width, int height, boolean offHeap) {
+        bytes(width, height);
+        this.width = width;
+        this.height = height;
+        this.offHeap = offHeap;
+        allocate();
+    }
+
+    /**
+     * Creates a grid stored off-heap, with every cell set to 0.
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @return the grid
+     */
+    public static ByteGrid offHeap(int width, int height) {
+        return new ByteGrid(width, height, true);
+    }
+
+    /**
+     * Creates a grid over existing off-heap memory, such as part of a mapped file, holding the
+     * value of every cell in row-major order. Changes to the grid are made to the memory, unless
+     * the buffer is read-only, in which case the grid copies its cells into memory of its own
+     * the first time it is changed. Closing the grid does not free the memory of the buffer,
+     * which stays with whoever owns it.
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @param buffer the memory, from its position, at least width * height bytes long
+     * @return the grid
+     */
+    public static ByteGrid wrap(int width, int height, ByteBuffer buffer) {
+        if (buffer.remaining() < bytes(width, height)) {
+            throw new IllegalArgumentException("buffer too small for a " + width + "x"
+                    + height + " grid");
+        }
+        return new ByteGrid(width, height, buffer.slice());
+    }
+
+    /**
+     * @return the width of the grid
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the grid
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return whether the grid is stored off-heap
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return the value at the given position
+     */
+    public int get(int x, int y) {
+        int i = index(x, y);
+        if (values != null) {
+            return values[i];
+        }
+        return open().get(i);
+    }
+
+    /**
+     * Sets the value at the given position.
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param value the new value, between -128 and 127
+     */
+    public void set(int x, int y, int value) {
+        int i = index(x, y);
+        if (values != null) {
+            values[i] = (byte) value;
+        } else {
+            writable().put(i, (byte) value);
+        }
+    }
+
+    /**
+     * Copies one row of values out of the grid.
+     * @param y the row
+     * @param destination the array to copy into, at least width long from offset
+     * @param offset the index of destination to start copying to
+     */
+    public void readRow(int y, byte[] destination, int offset) {
+        if (values != null) {
+            System.arraycopy(values, index(0, y), destination, offset, width);
+        } else {
+            at(open(), index(0, y)).get(destination, offset, width);
+        }
+    }
+
+    /**
+     * Copies one row of values into the grid.
+     * @param y the row
+     * @param source the array to copy from, at least width long from offset
+     * @param offset the index of source to start copying from
+     */
+    public void writeRow(int y, byte[] source, int offset) {
+        if (values != null) {
+            System.arraycopy(source, offset, values, index(0, y), width);
+        } else {
+            at(writable(), index(0, y)).put(source, offset, width);
+        }
+    }
+
+    /**
+     * Frees the memory of the grid. The grid cannot be used afterwards. Closing a grid more
+     * than once does nothing.
+     */
+    @Override
+    public void close() {
+        values = null;
+        direct = null;
+        if (memory != null) {
+            DirectMemory.free(memory);
+            memory = null;
+        }
+    }
+
+    private int index(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new IndexOutOfBoundsException("position x=" + x + ", y=" + y
+                    + " is outside of a " + width + "x" + height + " grid");
+        }
+        return y * width + x;
+    }
+
+    /**
+     * Checks the size of a grid, and works out how much memory its cells take up.
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @return the number of bytes taken up by the cells of the grid
+     * @throws IllegalArgumentException if the size is not positive, or the grid is too large
+     */
+    private static int bytes(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("invalid grid size: " + width + "x" + height);
+        }
+        try {
+            return Math.multiplyExact(width, height);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("grid too large: " + width + "x" + height);
+        }
+    }
+
+    private void allocate() {
+        if (offHeap) {
+            memory = DirectMemory.allocate(bytes(width, height));
+            direct = memory;
+        } else {
+            values = new byte[width * height];
+        }
+    }
+
+    /**
+     * @param buffer the buffer
+     * @param index the index to start at
+     * @return a view of the buffer starting at the given index, so that its relative bulk
+     *         operations can stand in for absolute ones, which JDKs before 13 lack
+     */
+    private static ByteBuffer at(ByteBuffer buffer, int index) {
+        ByteBuffer view = buffer.duplicate();
+        view.position(index);
+        return view;
+    }
+
+    /**
+     * @return the off-heap storage of the grid, ready to be changed. A grid over read-only
+     *         memory first copies its cells into memory of its own.
+     */
+    private ByteBuffer writable() {
+        ByteBuffer buffer = open();
+        if (buffer.isReadOnly()) {
+            memory = DirectMemory.allocate(bytes(width, height));
+            direct = memory;
+            ByteBuffer source = at(buffer, 0);
+            source.limit(width * height);
+            at(direct, 0).put(source);
+            buffer = direct;
+        }
+        return buffer;
+    }
+
+    private ByteBuffer open() {
+        if (direct == null) {
+            throw new IllegalStateException("grid is closed");
+        }
+        return direct;
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+
+        byte[] saved = values;
+        if (saved == null) {
+            saved = new byte[width * height];
+            at(open(), 0).get(saved);
+        }
+        out.writeObject(saved);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        bytes(width, height);
+
+        byte[] saved = (byte[]) in.readObject();
+        if (offHeap) {
+            allocate();
+            at(direct, 0).put(saved);
+        } else {
+            values = saved;
+        }
+    }
+}
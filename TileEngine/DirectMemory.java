@@ -0,0 +1,69 @@
+package byog.TileEngine;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Allocates and frees the off-heap memory behind off-heap grids.
+ *
+ * Memory from ByteBuffer.allocateDirect is normally only freed once the buffer is garbage
+ * collected. So that closing a grid frees its memory straight away, the buffer is freed through
+ * sun.misc.Unsafe.invokeCleaner on JDK 9 and later, or through the buffer's own cleaner on JDK 8.
+ * Where neither can be reached, freeing is left to the garbage collector as usual.
+ */
+final class DirectMemory {
+    private static final Object UNSAFE;
+    private static final Method INVOKE_CLEANER;
+
+    static {
+        Object unsafe = null;
+        Method invokeCleaner = null;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = field.get(null);
+            invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            unsafe = null;
+            invokeCleaner = null;
+        }
+        UNSAFE = unsafe;
+        INVOKE_CLEANER = invokeCleaner;
+    }
+
+    private DirectMemory() {
+    }
+
+    /**
+     * @param bytes the number of bytes wanted
+     * @return a zeroed off-heap buffer in the platform's native byte order
+     */
+    static ByteBuffer allocate(int bytes) {
+        return ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Frees the memory of a buffer made by allocate. The buffer, and every view of it, must not
+     * be used afterwards.
+     * @param buffer the buffer
+     */
+    static void free(ByteBuffer buffer) {
+        try {
+            if (INVOKE_CLEANER != null) {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } else {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            // Leave the memory to the garbage collector.
+        }
+    }
+}
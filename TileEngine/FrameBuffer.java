@@ -0,0 +1,153 @@
+package byog.TileEngine;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.function.Consumer;
+import javax.imageio.ImageIO;
+
+/**
+ * Draws tiles into an image in memory, rather than to the screen. Each tile is drawn by copying
+ * the pixels of its image in a TileAtlas straight into the pixels of the frame, a row of the
+ * tile at a time, so drawing a tile costs no more than copying its pixels. A run of tiles in a
+ * row is copied a row of pixels at a time instead, across the whole run.
+ *
+ * When a frame is shown, the image is handed to the presenter given, if any, e.g., to draw it
+ * to a window in one go. Without a presenter, nothing is shown, which lets frames be rendered
+ * where there is no screen, e.g., to take screenshots (see save).
+ */
+public class FrameBuffer implements RenderBackend {
+    private final TileAtlas atlas;
+    private final Consumer<BufferedImage> presenter;
+    private BufferedImage image;
+    private int[] pixels;
+    private int width;
+    private int height;
+    // The pixels of each tile of the run being drawn (see drawRun).
+    private int[][] run = new int[0][];
+
+    /**
+     * Creates a frame buffer which shows frames to nothing.
+     * @param atlas the atlas the images of tiles are taken from
+     */
+    public FrameBuffer(TileAtlas atlas) {
+        this(atlas, null);
+    }
+
+    /**
+     * @param atlas the atlas the images of tiles are taken from
+     * @param presenter given the image of each frame shown, or null to show frames to nothing
+     */
+    public FrameBuffer(TileAtlas atlas, Consumer<BufferedImage> presenter) {
+        this.atlas = atlas;
+        this.presenter = presenter;
+    }
+
+    @Override
+    public void initialize(int w, int h) {
+        int tileSize = atlas.getTileSize();
+        this.width = w;
+        this.height = h;
+        this.image = new BufferedImage(w * tileSize, h * tileSize, BufferedImage.TYPE_INT_RGB);
+        this.pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    @Override
+    public void drawTile(int x, int y, int id) {
+        copy(x, y, atlas.pixels(id));
+    }
+
+    @Override
+    public void drawTile(int x, int y, TETile tile) {
+        copy(x, y, atlas.pixels(tile));
+    }
+
+    @Override
+    public void drawRun(int x, int y, short[] ids, int from, int to) {
+        if (image == null) {
+            throw new IllegalStateException("frame buffer has not been initialized");
+        }
+        if (y < 0 || y >= height) {
+            return;
+        }
+        if (x < 0) {
+            from -= x;
+            x = 0;
+        }
+        to = Math.min(to, from + width - x);
+        if (from >= to) {
+            return;
+        }
+
+        int count = to - from;
+        if (run.length < count) {
+            run = new int[count][];
+        }
+        for (int i = 0; i < count; i += 1) {
+            run[i] = atlas.pixels(ids[from + i]);
+        }
+
+        // Rows of pixels run from the top of the image down, and tiles from the bottom up.
+        int tileSize = atlas.getTileSize();
+        int stride = image.getWidth();
+        int start = (height - 1 - y) * tileSize * stride + x * tileSize;
+        for (int row = 0; row < tileSize; row += 1) {
+            int at = start + row * stride;
+            for (int i = 0; i < count; i += 1) {
+                System.arraycopy(run[i], row * tileSize, pixels, at, tileSize);
+                at += tileSize;
+            }
+        }
+    }
+
+    /**
+     * Copies the pixels of a tile into the frame.
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param tile the pixels of the tile, as from TileAtlas.pixels
+     */
+    private void copy(int x, int y, int[] tile) {
+        if (image == null) {
+            throw new IllegalStateException("frame buffer has not been initialized");
+        }
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            return;
+        }
+
+        // Rows of pixels run from the top of the image down, and tiles from the bottom up.
+        int tileSize = atlas.getTileSize();
+        int stride = image.getWidth();
+        int at = (height - 1 - y) * tileSize * stride + x * tileSize;
+        for (int row = 0; row < tileSize; row += 1) {
+            System.arraycopy(tile, row * tileSize, pixels, at, tileSize);
+            at += stride;
+        }
+    }
+
+    @Override
+    public void show() {
+        if (presenter != null && image != null) {
+            presenter.accept(image);
+        }
+    }
+
+    /**
+     * @return the image of the frame drawn so far
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Writes the frame drawn so far to a PNG file.
+     * @param file the file to write to
+     * @throws IOException if the file cannot be written
+     */
+    public void save(File file) throws IOException {
+        if (image == null) {
+            throw new IllegalStateException("frame buffer has not been initialized");
+        }
+        ImageIO.write(image, "png", file);
+    }
+}
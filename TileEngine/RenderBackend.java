@@ -0,0 +1,56 @@
+package byog.TileEngine;
+
+/**
+ * Somewhere TERenderer draws tiles to. A frame is drawn a tile at a time, in any order, and
+ * then shown with show. Tiles are given by their ID in the TilePalette, or as the tile itself
+ * when it has no ID, and placed in units of tiles, with (0, 0) at the bottom left, as with
+ * StdDraw.
+ *
+ * The backend keeps what was drawn until it is drawn over, since the renderer only draws the
+ * tiles which have changed since the last frame.
+ */
+public interface RenderBackend {
+    /**
+     * Gets ready to draw frames of the given size, clearing anything drawn before.
+     * @param width width of the frame in tiles
+     * @param height height of the frame in tiles
+     */
+    void initialize(int width, int height);
+
+    /**
+     * Draws a tile.
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param id the palette ID of the tile to draw
+     */
+    void drawTile(int x, int y, int id);
+
+    /**
+     * Draws a tile which has no palette ID. This is slower than drawing a tile by its ID, since
+     * nothing about the tile can be kept for next time.
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param tile the tile to draw
+     */
+    void drawTile(int x, int y, TETile tile);
+
+    /**
+     * Draws a run of tiles side by side in a row, the first of them at (x, y). By default each
+     * tile is drawn on its own, but a backend may draw the run faster in one go.
+     * @param x x coordinate of the first tile of the run
+     * @param y y coordinate of the run
+     * @param ids the palette IDs of the tiles to draw
+     * @param from index in ids of the first tile of the run
+     * @param to index in ids after the last tile of the run
+     */
+    default void drawRun(int x, int y, short[] ids, int from, int to) {
+        for (int i = from; i < to; i += 1) {
+            drawTile(x + i - from, y, ids[i]);
+        }
+    }
+
+    /**
+     * Shows the frame drawn so far.
+     */
+    void show();
+}
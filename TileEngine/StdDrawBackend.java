@@ -0,0 +1,137 @@
+package byog.TileEngine;
+
+import edu.princeton.cs.introcs.StdDraw;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.lang.reflect.Field;
+
+/**
+ * Draws tiles to the StdDraw canvas. Tiles are drawn into a FrameBuffer, as images from a
+ * TileAtlas, and when a frame is shown, the part of the frame drawn since the last one is drawn
+ * onto the canvas as a single image.
+ *
+ * StdDraw can only draw images read from files, so the frame is drawn straight onto the
+ * graphics StdDraw draws its canvas with, which StdDraw keeps in a private field. Where that
+ * field cannot be reached, e.g., in another version of StdDraw, each tile is drawn by the tile
+ * itself instead (see TETile.draw).
+ */
+public class StdDrawBackend implements RenderBackend {
+    private final TileAtlas atlas;
+    private final FrameBuffer frame;
+    // The graphics StdDraw draws its canvas with, or null to draw each tile through StdDraw.
+    private Graphics2D canvas;
+
+    // The tiles drawn since the frame was last shown, as a rectangle of tiles. It is empty
+    // when minX > maxX.
+    private int minX;
+    private int minY;
+    private int maxX;
+    private int maxY;
+
+    /**
+     * @param atlas the atlas the images of tiles are taken from
+     */
+    public StdDrawBackend(TileAtlas atlas) {
+        this.atlas = atlas;
+        this.frame = new FrameBuffer(atlas);
+    }
+
+    @Override
+    public void initialize(int width, int height) {
+        int tileSize = atlas.getTileSize();
+        StdDraw.setCanvasSize(width * tileSize, height * tileSize);
+        StdDraw.setFont(atlas.getFont());
+        StdDraw.setXscale(0, width);
+        StdDraw.setYscale(0, height);
+        StdDraw.clear(new Color(0, 0, 0));
+        StdDraw.enableDoubleBuffering();
+        StdDraw.show();
+
+        // Setting the canvas size gives StdDraw new graphics, so they are looked up afresh.
+        frame.initialize(width, height);
+        canvas = canvasGraphics();
+        minX = Integer.MAX_VALUE;
+        minY = Integer.MAX_VALUE;
+        maxX = Integer.MIN_VALUE;
+        maxY = Integer.MIN_VALUE;
+    }
+
+    @Override
+    public void drawTile(int x, int y, int id) {
+        if (canvas == null) {
+            TilePalette.tileOf(id).draw(x, y);
+            return;
+        }
+        frame.drawTile(x, y, id);
+        mark(x, x, y);
+    }
+
+    @Override
+    public void drawTile(int x, int y, TETile tile) {
+        if (canvas == null) {
+            tile.draw(x, y);
+            return;
+        }
+        frame.drawTile(x, y, tile);
+        mark(x, x, y);
+    }
+
+    @Override
+    public void drawRun(int x, int y, short[] ids, int from, int to) {
+        if (canvas == null) {
+            RenderBackend.super.drawRun(x, y, ids, from, to);
+            return;
+        }
+        frame.drawRun(x, y, ids, from, to);
+        mark(x, x + to - from - 1, y);
+    }
+
+    @Override
+    public void show() {
+        if (canvas != null && minX <= maxX) {
+            // Rows of pixels run from the top of the canvas down, and tiles from the bottom up.
+            int tileSize = atlas.getTileSize();
+            int rows = frame.getImage().getHeight() / tileSize;
+            int left = Math.max(minX, 0) * tileSize;
+            int right = Math.min(maxX + 1, frame.getImage().getWidth() / tileSize) * tileSize;
+            int top = (rows - 1 - Math.min(maxY, rows - 1)) * tileSize;
+            int bottom = (rows - Math.max(minY, 0)) * tileSize;
+            if (left < right && top < bottom) {
+                canvas.drawImage(frame.getImage(), left, top, right, bottom,
+                        left, top, right, bottom, null);
+            }
+            minX = Integer.MAX_VALUE;
+            minY = Integer.MAX_VALUE;
+            maxX = Integer.MIN_VALUE;
+            maxY = Integer.MIN_VALUE;
+        }
+        StdDraw.show();
+    }
+
+    /**
+     * Adds tiles drawn to those to be drawn onto the canvas when the frame is next shown.
+     * @param x1 x coordinate of the first tile drawn
+     * @param x2 x coordinate of the last tile drawn
+     * @param y y coordinate of the tiles drawn
+     */
+    private void mark(int x1, int x2, int y) {
+        minX = Math.min(minX, x1);
+        maxX = Math.max(maxX, x2);
+        minY = Math.min(minY, y);
+        maxY = Math.max(maxY, y);
+    }
+
+    /**
+     * @return the graphics StdDraw draws its canvas with, or null if they cannot be reached
+     */
+    private static Graphics2D canvasGraphics() {
+        try {
+            Field field = StdDraw.class.getDeclaredField("offscreen");
+            field.setAccessible(true);
+            Object graphics = field.get(null);
+            return graphics instanceof Graphics2D ? (Graphics2D) graphics : null;
+        } catch (ReflectiveOperationException | RuntimeException ex) {
+            return null;
+        }
+    }
+}
@@ -1,22 +1,55 @@
 package byog.TileEngine;
 
-import edu.princeton.cs.introcs.StdDraw;
-import java.awt.Color;
 import java.awt.Font;
+import java.util.Arrays;
 
 /**
  * Utility class for rendering tiles. You do not need to modify this file. You're welcome
  * to, but be careful. We strongly recommend getting everything else working before
  * messing with this renderer, unless you're trying to do something fancy like
  * allowing scrolling of the screen or tracking the player or something similar.
+ *
+ * Tiles are drawn through a RenderBackend. By default they are drawn to the StdDraw canvas,
+ * but they can be drawn into an image in memory instead (see FrameBuffer).
  */
 public class TERenderer {
-    private static final int TILE_SIZE = 16;
+    /** The width and height of a tile in pixels. */
+    public static final int TILE_SIZE = 16;
+    /** The font the characters of tiles are drawn in. */
+    public static final Font TILE_FONT = new Font("Monospaced", Font.BOLD, TILE_SIZE);
+    private final RenderBackend backend;
     private int width;
     private int height;
     private int xOffset;
     private int yOffset;
 
+    // The IDs (see TilePalette) of the tiles last drawn, row by row, or null if the screen must
+    // be drawn afresh. A tile drawn without an ID is -1.
+    private short[] drawn;
+    // The tiles last drawn from a TETile[][], row by row, or null where a grid was drawn since.
+    private TETile[] drawnTiles;
+    private int drawnWidth;
+    private int drawnHeight;
+    private short[] row;
+
+    /**
+     * Creates a renderer drawing to the StdDraw canvas.
+     */
+    public TERenderer() {
+        this(new StdDrawBackend(new TileAtlas(TILE_SIZE, TILE_FONT)));
+    }
+
+    /**
+     * Creates a renderer drawing through the given backend.
+     * @param backend the backend to draw through
+     */
+    public TERenderer(RenderBackend backend) {
+        if (backend == null) {
+            throw new IllegalArgumentException("backend must not be null");
+        }
+        this.backend = backend;
+    }
+
     /**
      * Same functionality as the other initialization method. The only difference is that the xOff
      * and yOff parameters will change where the renderFrame method starts drawing. For example,
@@ -32,22 +65,31 @@ public class TERenderer {
         this.xOffset = xOff;
         this.yOffset = yOff;
 
-        StdDraw.setCanvasSize(width * TILE_SIZE, height * TILE_SIZE);
-        Font font = new Font("Monospaced", Font.BOLD, TILE_SIZE);
-        StdDraw.setFont(font);
-        StdDraw.setXscale(0, width);
-        StdDraw.setYscale(0, height);
-        StdDraw.clear(new Color(0, 0, 0));
-        StdDraw.enableDoubleBuffering();
-        StdDraw.show();
+        backend.initialize(width, height);
+        invalidate();
     }
 
     /**
-     * Initializes StdDraw parameters and launches the StdDraw window. w and h are the
-     * width and height of the world in number of tiles. If the TETile[][] array that you
-     * pass to renderFrame is smaller than this, then extra blank space will be left
-     * on the right and top edges of the frame. For example, if you select w = 60 and
-     * h = 30, this method will create a 60 tile wide by 30 tile tall window. If
+     * Forgets what was last drawn, so that the next frame is drawn in full. This must be called
+     * whenever something else has drawn over the tiles, e.g., after the canvas is cleared.
+     */
+    public void invalidate() {
+        drawn = null;
+    }
+
+    /**
+     * @return the backend tiles are drawn through
+     */
+    public RenderBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Initializes the backend, e.g., setting StdDraw parameters and launching the StdDraw
+     * window. w and h are the width and height of the world in number of tiles. If the
+     * TETile[][] array that you pass to renderFrame is smaller than this, then extra blank
+     * space will be left on the right and top edges of the frame. For example, if you select
+     * w = 60 and h = 30, this method will create a 60 tile wide by 30 tile tall window. If
      * you then subsequently call renderFrame with a TETile[50][25] array, it will
      * leave 10 tiles blank on the right side and 5 tiles blank on the top side. If
      * you want to leave extra space on the left or bottom instead, use the other
@@ -61,7 +103,9 @@ public class TERenderer {
 
     /**
      * Takes in a 2d array of TETile objects and renders the 2d array to the screen, starting from
-     * xOffset and yOffset.
+     * xOffset and yOffset. The renderer remembers the tiles it last drew, and only draws the
+     * tiles which have changed since (see invalidate). Tiles are not given palette IDs by being
+     * drawn, so tiles made only to be drawn do not fill the TilePalette.
      *
      * If the array is an NxM array, then the element displayed at positions would be as follows,
      * given in units of tiles.
@@ -85,15 +129,83 @@ public class TERenderer {
         // Display the world tiles.
         int numXTiles = world.length;
         int numYTiles = world[0].length;
-        for (int x = 0; x < numXTiles; x += 1) {
-            for (int y = 0; y < numYTiles; y += 1) {
-                if (world[x][y] == null) {
+        prepare(numXTiles, numYTiles);
+        for (int y = 0; y < numYTiles; y += 1) {
+            for (int x = 0; x < numXTiles; x += 1) {
+                TETile tile = world[x][y];
+                if (tile == null) {
                     throw new IllegalArgumentException("Tile at position x=" + x + ", y=" + y
                             + " is null.");
                 }
-                world[x][y].draw(x + xOffset, y + yOffset);
+                int at = y * drawnWidth + x;
+                if (drawnTiles[at] == tile) {
+                    continue;
+                }
+                int id = TilePalette.find(tile);
+                if (id < 0) {
+                    backend.drawTile(x + xOffset, y + yOffset, tile);
+                } else if (drawn[at] != id) {
+                    backend.drawTile(x + xOffset, y + yOffset, id);
+                }
+                drawn[at] = (short) id;
+                drawnTiles[at] = tile;
+            }
+        }
+        backend.show();
+    }
+
+    /**
+     * Renders a TileGrid to the screen, starting from xOffset and yOffset, in the same way as
+     * renderFrame(TETile[][]).
+     * @param grid the grid to render
+     */
+    public void renderFrame(TileGrid grid) {
+        prepare(grid.getWidth(), grid.getHeight());
+        for (int y = 0; y < grid.getHeight(); y += 1) {
+            grid.readRow(y, row, 0);
+            drawRow(y);
+        }
+        backend.show();
+    }
+
+    /**
+     * Get ready to draw a frame of the given size. Only the tiles which differ from those last
+     * drawn are drawn, unless the frame is a different size, or the screen was invalidated.
+     * @param w width of the frame in tiles
+     * @param h height of the frame in tiles
+     */
+    private void prepare(int w, int h) {
+        if (drawn == null || drawnWidth != w || drawnHeight != h) {
+            drawn = new short[w * h];
+            Arrays.fill(drawn, (short) -1);
+            drawnTiles = new TETile[w * h];
+            drawnWidth = w;
+            drawnHeight = h;
+            row = new short[w];
+        }
+    }
+
+    /**
+     * Draws the tiles of the given row which differ from those last drawn there. The row's
+     * tile IDs are read from row.
+     * @param y y coordinate of the row
+     */
+    private void drawRow(int y) {
+        int start = y * drawnWidth;
+        int x = 0;
+        while (x < drawnWidth) {
+            if (drawn[start + x] == row[x]) {
+                x += 1;
+                continue;
+            }
+            int end = x + 1;
+            while (end < drawnWidth && drawn[start + end] != row[end]) {
+                end += 1;
             }
+            backend.drawRun(x + xOffset, y + yOffset, row, x, end);
+            System.arraycopy(row, x, drawn, start + x, end - x);
+            Arrays.fill(drawnTiles, start + x, start + end, null);
+            x = end;
         }
-        StdDraw.show();
     }
 }
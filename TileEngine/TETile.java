@@ -2,6 +2,8 @@ package byog.TileEngine;
 
 import java.awt.Color;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Random;
 import edu.princeton.cs.introcs.StdDraw;
 import byog.Core.RandomUtils;
@@ -21,11 +23,22 @@ import byog.Core.RandomUtils;
  */
 
 public class TETile implements java.io.Serializable {
+    // The most color variants remembered at once (see colorVariant).
+    private static final int MAX_VARIANTS = 4096;
+    private static final LinkedHashMap<VariantKey, TETile> VARIANTS =
+            new LinkedHashMap<VariantKey, TETile>(64, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<VariantKey, TETile> eldest) {
+                    return size() > MAX_VARIANTS;
+                }
+            };
+
     private final char character; // Do not rename character or the autograder will break.
     private final Color textColor;
     private final Color backgroundColor;
     private final String description;
     private final String filepath;
+    private transient int paletteId; // One more than the palette ID, so that zero is unassigned.
 
     /**
      * Full constructor for TETile objects.
@@ -113,10 +126,51 @@ public class TETile implements java.io.Serializable {
         return description;
     }
 
+    /**
+     * @return the color of the character itself
+     */
+    public Color textColor() {
+        return textColor;
+    }
+
+    /**
+     * @return the color drawn behind the character
+     */
+    public Color backgroundColor() {
+        return backgroundColor;
+    }
+
+    /**
+     * @return the path to the image drawn for this tile, or null if there is none
+     */
+    public String filepath() {
+        return filepath;
+    }
+
+    /**
+     * @return the ID of this tile in the TilePalette, or -1 if it has not been given one yet
+     */
+    int paletteId() {
+        return paletteId - 1;
+    }
+
+    /**
+     * Caches the ID of this tile in the TilePalette.
+     * @param id the palette ID
+     */
+    void setPaletteId(int id) {
+        paletteId = id + 1;
+    }
+
     /**
      * Creates a copy of the given tile with a slightly different text color. The new
      * color will have a red value that is within dr of the current red value,
      * and likewise with dg and db.
+     *
+     * Variants are remembered by their base tile and color, so asking for a variant already made
+     * returns the same tile without creating anything. The most recently used variants are
+     * remembered. A variant is not given a palette ID until it is stored in a grid, so variants
+     * which are only drawn, or thrown away, do not fill the TilePalette.
      * @param t the tile to copy
      * @param dr the maximum difference in red value
      * @param dg the maximum difference in green value
@@ -129,9 +183,42 @@ public class TETile implements java.io.Serializable {
         int newGreen = newColorValue(oldColor.getGreen(), dg, r);
         int newBlue = newColorValue(oldColor.getBlue(), db, r);
 
-        Color c = new Color(newRed, newGreen, newBlue);
+        VariantKey key = new VariantKey(t, newRed << 16 | newGreen << 8 | newBlue);
+        synchronized (VARIANTS) {
+            TETile variant = VARIANTS.get(key);
+            if (variant == null) {
+                variant = new TETile(t, new Color(newRed, newGreen, newBlue));
+                VARIANTS.put(key, variant);
+            }
+            return variant;
+        }
+    }
+
+    /**
+     * Identifies a color variant by the tile it was made from and its text color.
+     */
+    private static final class VariantKey {
+        private final TETile base;
+        private final int rgb;
 
-        return new TETile(t, c);
+        VariantKey(TETile base, int rgb) {
+            this.base = base;
+            this.rgb = rgb;
+        }
+
+        @Override
+        public boolean equals(Object x) {
+            if (!(x instanceof VariantKey)) {
+                return false;
+            }
+            VariantKey that = (VariantKey) x;
+            return this.base == that.base && this.rgb == that.rgb;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(base) * 31 + rgb;
+        }
     }
 
     private static int newColorValue(int v, int dv, Random r) {
@@ -189,6 +276,15 @@ public class TETile implements java.io.Serializable {
         return copy;
     }
 
+    /**
+     * Tiles are read back as their canonical instance (see TilePalette.intern), so that tiles
+     * from a save file are the same objects as the tiles of a new game.
+     * @return the canonical tile equal in value to this one
+     */
+    private Object readResolve() {
+        return TilePalette.intern(this);
+    }
+
     @Override
     /** Provides an equals method that is consistent
      *  with the way that the autograder works.
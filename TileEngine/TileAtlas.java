@@ -0,0 +1,131 @@
+package byog.TileEngine;
+
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import javax.imageio.ImageIO;
+
+/**
+ * Images of tiles, drawn once and kept, so that drawing a tile is copying an image rather than
+ * filling a square and laying out a character. Tiles are looked up by their ID in the
+ * TilePalette, and each tile's image is drawn the first time it is asked for.
+ *
+ * A tile is drawn as its character on its background color, in the same font and at the same
+ * place as TETile.draw would draw it. A tile with an image file is drawn as that image, loaded
+ * once and centered on the tile, falling back to its character when the file cannot be read.
+ * Every image is tileSize pixels square, with its pixels held as ints (see pixels).
+ */
+public class TileAtlas {
+    private final int tileSize;
+    private final Font font;
+    private BufferedImage[] images = new BufferedImage[0];
+
+    /**
+     * @param tileSize the width and height of each tile in pixels
+     * @param font the font the characters of tiles are drawn in
+     */
+    public TileAtlas(int tileSize, Font font) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("tileSize must be positive: " + tileSize);
+        }
+        this.tileSize = tileSize;
+        this.font = font;
+    }
+
+    /**
+     * @return the width and height of each tile in pixels
+     */
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * @return the font the characters of tiles are drawn in
+     */
+    public Font getFont() {
+        return font;
+    }
+
+    /**
+     * @param id the palette ID of a tile
+     * @return the image of the tile
+     */
+    public BufferedImage image(int id) {
+        if (id >= images.length) {
+            int size = TilePalette.size();
+            images = Arrays.copyOf(images, size);
+        }
+        if (images[id] == null) {
+            images[id] = draw(TilePalette.tileOf(id));
+        }
+        return images[id];
+    }
+
+    /**
+     * @param id the palette ID of a tile
+     * @return the pixels of the image of the tile, as RGB ints, row by row from the top. The
+     *         array belongs to the image, so it must not be changed.
+     */
+    public int[] pixels(int id) {
+        return ((DataBufferInt) image(id).getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Draws the image of a tile which has no palette ID. The image is not kept, so it is drawn
+     * afresh every time.
+     * @param tile the tile
+     * @return the pixels of the image of the tile, as with pixels(int)
+     */
+    public int[] pixels(TETile tile) {
+        return ((DataBufferInt) draw(tile).getRaster().getDataBuffer()).getData();
+    }
+
+    /**
+     * Draws the image of the given tile.
+     * @param tile the tile to draw
+     * @return the image of the tile
+     */
+    private BufferedImage draw(TETile tile) {
+        BufferedImage image = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+
+        if (tile.filepath() != null) {
+            try {
+                BufferedImage picture = ImageIO.read(new File(tile.filepath()));
+                if (picture != null) {
+                    graphics.drawImage(picture, (tileSize - picture.getWidth()) / 2,
+                            (tileSize - picture.getHeight()) / 2, null);
+                    graphics.dispose();
+                    return image;
+                }
+            } catch (IOException e) {
+                // The file can't be read. In this case, fall back to the character and colors,
+                // as TETile.draw does.
+            }
+        }
+
+        graphics.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
+                RenderingHints.VALUE_ANTIALIAS_ON);
+        graphics.setRenderingHint(RenderingHints.KEY_RENDERING,
+                RenderingHints.VALUE_RENDER_QUALITY);
+        graphics.setColor(tile.backgroundColor());
+        graphics.fillRect(0, 0, tileSize, tileSize);
+
+        // Center the character the way StdDraw.text does.
+        String text = Character.toString(tile.character());
+        graphics.setFont(font);
+        graphics.setColor(tile.textColor());
+        FontMetrics metrics = graphics.getFontMetrics();
+        float x = (float) (tileSize / 2.0 - metrics.stringWidth(text) / 2.0);
+        float y = (float) (tileSize / 2.0 + metrics.getDescent());
+        graphics.drawString(text, x, y);
+        graphics.dispose();
+        return image;
+    }
+}
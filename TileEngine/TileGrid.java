@@ -0,0 +1,402 @@
+package byog.TileEngine;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ShortBuffer;
+
+/**
+ * A fixed-size grid of tiles, stored as a single flat array of tile IDs (see TilePalette) in
+ * row-major order. Compared to a TETile[][], every cell costs two bytes rather than a reference,
+ * full-grid scans walk one contiguous array, and saving a grid writes the IDs rather than a tile
+ * object per cell.
+ *
+ * Positions use the same convention as the rest of the engine: x runs from 0 at the left to
+ * width - 1, and y from 0 at the bottom to height - 1.
+ *
+ * A grid may instead be stored off-heap (see offHeap), in memory outside of the garbage collected
+ * heap, so that very large grids do not make garbage collection pauses longer. An off-heap grid
+ * should be closed once it is no longer needed, which frees its memory straight away. Using a
+ * closed grid throws an IllegalStateException. Closing an on-heap grid does the same, but its
+ * memory is left to the garbage collector.
+ */
+public class TileGrid implements java.io.Serializable, AutoCloseable {
+    private final int width;
+    private final int height;
+    private final boolean offHeap;
+    private transient short[] ids;
+    private transient ByteBuffer memory;
+    private transient ShortBuffer direct;
+
+    /**
+     * Creates a grid with every cell set to the given tile.
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @param fill the tile every cell starts as
+     */
+    public TileGrid(int width, int height, TETile fill) {
+        this(width, height, fill, false);
+    }
+
+    private TileGrid(int width, int height) {
+        bytes(width, height);
+        this.width = width;
+        this.height = height;
+        this.offHeap = true;
+    }
+
+    private TileGrid(int width, int height, TETile fill, boolean offHeap) {
+        bytes(width, height);
+        this.width = width;
+        this.height = height;
+        this.offHeap = offHeap;
+        allocate();
+        fill(fill);
+    }
+
+    /**
+     * Creates a grid stored off-heap, with every cell set to the given tile.
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @param fill the tile every cell starts as
+     * @return the grid
+     */
+    public static TileGrid offHeap(int width, int height, TETile fill) {
+        return new TileGrid(width, height, fill, true);
+    }
+
+    /**
+     * Creates a grid over existing off-heap memory, such as part of a mapped file, holding the
+     * tile IDs of every cell in row-major order in the buffer's byte order. Changes to the grid
+     * are made to the memory, unless the buffer is read-only, in which case the grid copies its
+     * cells into memory of its own the first time it is changed. Closing the grid does not free
+     * the memory of the buffer, which stays with whoever owns it.
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @param buffer the memory, from its position, at least width * height * 2 bytes long
+     * @return the grid
+     */
+    public static TileGrid wrap(int width, int height, ByteBuffer buffer) {
+        TileGrid grid = new TileGrid(width, height);
+        if (buffer.remaining() < bytes(width, height)) {
+            throw new IllegalArgumentException("buffer too small for a " + width + "x"
+                    + height + " grid");
+        }
+        grid.direct = buffer.slice().order(buffer.order()).asShortBuffer();
+        return grid;
+    }
+
+    /**
+     * @return whether the grid is stored off-heap
+     */
+    public boolean isOffHeap() {
+        return offHeap;
+    }
+
+    /**
+     * Frees the memory of the grid. The grid cannot be used afterwards. Closing a grid more
+     * than once does nothing.
+     */
+    @Override
+    public void close() {
+        ids = null;
+        direct = null;
+        if (memory != null) {
+            DirectMemory.free(memory);
+            memory = null;
+        }
+    }
+
+    /**
+     * @return the width of the grid
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height of the grid
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return the tile at the given position
+     */
+    public TETile get(int x, int y) {
+        return TilePalette.tileOf(getId(x, y));
+    }
+
+    /**
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return the ID of the tile at the given position
+     */
+    public int getId(int x, int y) {
+        int i = index(x, y);
+        if (ids != null) {
+            return ids[i];
+        }
+        return open().get(i);
+    }
+
+    /**
+     * Sets the tile at the given position.
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param tile the new tile
+     */
+    public void set(int x, int y, TETile tile) {
+        setId(x, y, TilePalette.idOf(tile));
+    }
+
+    /**
+     * Sets the ID of the tile at the given position.
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param id the new tile ID
+     */
+    public void setId(int x, int y, int id) {
+        int i = index(x, y);
+        if (ids != null) {
+            ids[i] = (short) id;
+        } else {
+            writable().put(i, (short) id);
+        }
+    }
+
+    /**
+     * Sets every cell of the grid to the given tile.
+     * @param tile the tile
+     */
+    public void fill(TETile tile) {
+        fill(0, 0, width, height, tile);
+    }
+
+    /**
+     * Sets every cell of a rectangle of the grid to the given tile, a row at a time.
+     * @param x1 the left-most x coordinate of the rectangle
+     * @param y1 the bottom-most y coordinate of the rectangle
+     * @param x2 the x coordinate just past the right of the rectangle
+     * @param y2 the y coordinate just past the top of the rectangle
+     * @param tile the tile
+     */
+    public void fill(int x1, int y1, int x2, int y2, TETile tile) {
+        if (x1 >= x2 || y1 >= y2) {
+            return;
+        }
+        index(x1, y1);
+        index(x2 - 1, y2 - 1);
+
+        short id = (short) TilePalette.idOf(tile);
+        if (ids != null) {
+            for (int y = y1; y < y2; y += 1) {
+                java.util.Arrays.fill(ids, y * width + x1, y * width + x2, id);
+            }
+            return;
+        }
+
+        ShortBuffer buffer = writable();
+        for (int y = y1; y < y2; y += 1) {
+            for (int i = y * width + x1; i < y * width + x2; i += 1) {
+                buffer.put(i, id);
+            }
+        }
+    }
+
+    /**
+     * Copies one row of tile IDs out of the grid.
+     * @param y the row
+     * @param destination the array to copy into, at least width long from offset
+     * @param offset the index of destination to start copying to
+     */
+    public void readRow(int y, short[] destination, int offset) {
+        if (ids != null) {
+            System.arraycopy(ids, index(0, y), destination, offset, width);
+        } else {
+            at(open(), index(0, y)).get(destination, offset, width);
+        }
+    }
+
+    /**
+     * Copies one row of tile IDs into the grid.
+     * @param y the row
+     * @param source the array to copy from, at least width long from offset
+     * @param offset the index of source to start copying from
+     */
+    public void writeRow(int y, short[] source, int offset) {
+        if (ids != null) {
+            System.arraycopy(source, offset, ids, index(0, y), width);
+        } else {
+            at(writable(), index(0, y)).put(source, offset, width);
+        }
+    }
+
+    /**
+     * Copies every tile of another grid of the same size into this grid.
+     * @param other the grid to copy
+     */
+    public void copyFrom(TileGrid other) {
+        if (other.width != width || other.height != height) {
+            throw new IllegalArgumentException("grid sizes differ");
+        }
+        if (ids != null && other.ids != null) {
+            System.arraycopy(other.ids, 0, ids, 0, ids.length);
+            return;
+        }
+
+        short[] row = new short[width];
+        for (int y = 0; y < height; y += 1) {
+            other.readRow(y, row, 0);
+            writeRow(y, row, 0);
+        }
+    }
+
+    /**
+     * Creates a TETile[][] copy of the grid, indexed [x][y], for code which still works with
+     * arrays of tiles. Changes to the copy are not reflected in the grid.
+     * @return the tiles of the grid
+     */
+    public TETile[][] toArray() {
+        TETile[][] array = new TETile[width][height];
+        short[] row = new short[width];
+
+        for (int y = 0; y < height; y += 1) {
+            readRow(y, row, 0);
+            for (int x = 0; x < width; x += 1) {
+                array[x][y] = TilePalette.tileOf(row[x]);
+            }
+        }
+        return array;
+    }
+
+    private int index(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) {
+            throw new IndexOutOfBoundsException("position x=" + x + ", y=" + y
+                    + " is outside of a " + width + "x" + height + " grid");
+        }
+        return y * width + x;
+    }
+
+    /**
+     * Checks the size of a grid, and works out how much memory its cells take up.
+     * @param width the width of the grid
+     * @param height the height of the grid
+     * @return the number of bytes taken up by the cells of the grid
+     * @throws IllegalArgumentException if the size is not positive, or the grid is too large
+     */
+    private static int bytes(int width, int height) {
+        if (width <= 0 || height <= 0) {
+            throw new IllegalArgumentException("invalid grid size: " + width + "x" + height);
+        }
+        try {
+            return Math.multiplyExact(Math.multiplyExact(width, height), Short.BYTES);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("grid too large: " + width + "x" + height);
+        }
+    }
+
+    private void allocate() {
+        if (offHeap) {
+            memory = DirectMemory.allocate(bytes(width, height));
+            direct = memory.asShortBuffer();
+        } else {
+            ids = new short[width * height];
+        }
+    }
+
+    /**
+     * @return the off-heap storage of the grid
+     */
+    private ShortBuffer open() {
+        if (direct == null) {
+            throw new IllegalStateException("grid is closed");
+        }
+        return direct;
+    }
+
+    /**
+     * @param buffer the buffer
+     * @param index the index to start at
+     * @return a view of the buffer starting at the given index, so that its relative bulk
+     *         operations can stand in for absolute ones, which JDKs before 13 lack
+     */
+    private static ShortBuffer at(ShortBuffer buffer, int index) {
+        ShortBuffer view = buffer.duplicate();
+        view.position(index);
+        return view;
+    }
+
+    /**
+     * @return the off-heap storage of the grid, ready to be changed. A grid over read-only
+     *         memory first copies its cells into memory of its own.
+     */
+    private ShortBuffer writable() {
+        ShortBuffer buffer = open();
+        if (buffer.isReadOnly()) {
+            memory = DirectMemory.allocate(bytes(width, height));
+            direct = memory.asShortBuffer();
+            ShortBuffer source = at(buffer, 0);
+            source.limit(width * height);
+            at(direct, 0).put(source);
+            buffer = direct;
+        }
+        return buffer;
+    }
+
+    /**
+     * Saves the grid as its tile IDs, along with the tile for every ID used, as IDs given to
+     * tiles outside of Tileset may differ between runs.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+
+        short[] saved = ids;
+        if (saved == null) {
+            saved = new short[width * height];
+            at(open(), 0).get(saved);
+        }
+
+        int maxId = 0;
+        for (short id : saved) {
+            maxId = Math.max(maxId, id);
+        }
+
+        TETile[] used = new TETile[maxId + 1];
+        for (int id = 0; id <= maxId; id += 1) {
+            used[id] = TilePalette.tileOf(id);
+        }
+        out.writeObject(used);
+        out.writeObject(saved);
+    }
+
+    /**
+     * Loads a grid saved by writeObject, mapping the saved IDs to this run's IDs.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        bytes(width, height);
+
+        TETile[] used = (TETile[]) in.readObject();
+        short[] saved = (short[]) in.readObject();
+
+        short[] remap = new short[used.length];
+        for (int id = 0; id < used.length; id += 1) {
+            remap[id] = (short) TilePalette.idOf(used[id]);
+        }
+        for (int i = 0; i < saved.length; i += 1) {
+            saved[i] = remap[saved[i]];
+        }
+
+        if (offHeap) {
+            allocate();
+            at(direct, 0).put(saved);
+        } else {
+            ids = saved;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package byog.TileEngine;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Maps tiles to small integer IDs and back, so that grids of tiles can be stored as arrays of
+ * IDs rather than arrays of references (see TileGrid).
+ *
+ * Every tile in Tileset is given an ID when the palette is first used. Any other tile is given
+ * the next free ID the first time it is seen. Tiles are matched by value (character, colors,
+ * description and image path), so a tile read back from a save file gets the same ID as the
+ * tile it was saved from. The ID of a tile is cached on the tile itself, so looking up a tile
+ * already seen costs a field read.
+ *
+ * The first tile seen with a value is its canonical instance (see intern). Tiles read from
+ * grids or deserialized are canonical, so two such tiles have the same value exactly when they
+ * are the same object. IDs are never given back, so only tiles which are stored need one; to
+ * look a tile up without giving it an ID, use find.
+ */
+public final class TilePalette {
+    /** The largest number of distinct tiles the palette can hold. */
+    public static final int MAX_TILES = Short.MAX_VALUE + 1;
+
+    private static final HashMap<String, Integer> IDS = new HashMap<>();
+    private static volatile TETile[] tiles = new TETile[64];
+    private static int size = 0;
+
+    static {
+        for (Field field : Tileset.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == TETile.class) {
+                try {
+                    idOf((TETile) field.get(null));
+                } catch (IllegalAccessException ex) {
+                    throw new IllegalStateException("cannot read tile " + field.getName(), ex);
+                }
+            }
+        }
+    }
+
+    private TilePalette() {
+    }
+
+    /**
+     * Find the ID of the given tile, giving it a new ID if no equal tile has been seen before.
+     *
+     * @param tile the tile
+     * @return the ID of the tile
+     */
+    public static int idOf(TETile tile) {
+        int id = tile.paletteId();
+        if (id >= 0) {
+            return id;
+        }
+        return register(tile);
+    }
+
+    /**
+     * Find the ID of the given tile, without giving it one if no equal tile has been seen before.
+     *
+     * @param tile the tile
+     * @return the ID of the tile, or -1 if it has none
+     */
+    public static int find(TETile tile) {
+        int id = tile.paletteId();
+        if (id >= 0) {
+            return id;
+        }
+        synchronized (TilePalette.class) {
+            Integer found = IDS.get(key(tile));
+            if (found == null) {
+                return -1;
+            }
+            tile.setPaletteId(found);
+            return found;
+        }
+    }
+
+    /**
+     * Find the canonical instance of the given tile, i.e., the first tile seen equal in value.
+     *
+     * @param tile the tile
+     * @return the canonical tile
+     */
+    public static TETile intern(TETile tile) {
+        return tileOf(idOf(tile));
+    }
+
+    /**
+     * @param id a tile ID
+     * @return the tile with the given ID. This is the first tile seen with the ID's value.
+     */
+    public static TETile tileOf(int id) {
+        return tiles[id];
+    }
+
+    /**
+     * @return the number of tiles in the palette
+     */
+    public static synchronized int size() {
+        return size;
+    }
+
+    private static synchronized int register(TETile tile) {
+        String key = key(tile);
+        Integer id = IDS.get(key);
+
+        if (id == null) {
+            if (size == MAX_TILES) {
+                throw new IllegalStateException("tile palette is full");
+            }
+            TETile[] grown = size == tiles.length ? Arrays.copyOf(tiles, size * 2) : tiles;
+            grown[size] = tile;
+            tiles = grown;
+            id = size;
+            IDS.put(key, id);
+            size += 1;
+        }
+        tile.setPaletteId(id);
+        return id;
+    }
+
+    /**
+     * @return a key which is equal for tiles equal in value
+     */
+    private static String key(TETile tile) {
+        return tile.character() + "|" + rgb(tile.textColor()) + "|" + rgb(tile.backgroundColor())
+                + "|" + tile.description() + "|" + tile.filepath();
+    }
+
+    private static String rgb(java.awt.Color color) {
+        return color == null ? "null" : Integer.toString(color.getRGB());
+    }
+}
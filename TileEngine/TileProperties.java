@@ -0,0 +1,183 @@
+package byog.TileEngine;
+
+import java.util.Arrays;
+
+/**
+ * Properties of tiles, looked up by palette ID (see TilePalette) rather than worked out from
+ * descriptions or characters. Each tile has a bit mask of flags, such as whether it can be walked
+ * on or blocks sight, and the IDs of its dark, virtual and light forms: the tile shown for it
+ * once it has been seen but is out of view, in the digital world, and in the physical world.
+ *
+ * The tiles of Tileset are given their properties below. Any other tile is given properties from
+ * its character, the way tiles were always compared: a '#' blocks sight and cannot be walked on,
+ * a ' ' is empty, and everything else can be walked on. Such a tile has no other forms.
+ */
+public final class TileProperties {
+    /** The tile can be walked on. */
+    public static final int PASSABLE = 1;
+    /** The tile blocks sight, and cannot be walked on. Every kind of wall is opaque. */
+    public static final int OPAQUE = 1 << 1;
+    /** The tile is a trap. */
+    public static final int TRAP = 1 << 2;
+    /** The tile is something the player can pick up. */
+    public static final int PICKUP = 1 << 3;
+    /** The tile is empty space. */
+    public static final int EMPTY = 1 << 4;
+    /** The tile is plain floor, shown as random static in the digital world. */
+    public static final int FLOOR = 1 << 5;
+
+    /** The form of a tile which has none. */
+    public static final int NONE = -1;
+
+    private static volatile int[] flags = new int[0];
+    private static int[] darkForms = new int[0];
+    private static int[] virtualForms = new int[0];
+    private static int[] lightForms = new int[0];
+
+    static {
+        define(Tileset.NOTHING, EMPTY | PASSABLE);
+
+        define(Tileset.FLOOR, FLOOR | PASSABLE);
+        darkForm(Tileset.FLOOR, Tileset.FLOORD);
+        define(Tileset.FLOORD, PASSABLE);
+        lightForm(Tileset.FLOORD, Tileset.FLOOR);
+        define(Tileset.FLOORV, PASSABLE);
+
+        TETile[] walls = {Tileset.WALL1, Tileset.WALL2, Tileset.WALL3, Tileset.WALL4,
+            Tileset.WALL5};
+        TETile[] darkWalls = {Tileset.WALL1D, Tileset.WALL2D, Tileset.WALL3D, Tileset.WALL4D,
+            Tileset.WALL5D};
+        for (int i = 0; i < walls.length; i += 1) {
+            define(walls[i], OPAQUE);
+            darkForm(walls[i], darkWalls[i]);
+            virtualForm(walls[i], Tileset.WALLV);
+            define(darkWalls[i], OPAQUE);
+            lightForm(darkWalls[i], walls[i]);
+        }
+        define(Tileset.WALL, OPAQUE);
+        virtualForm(Tileset.WALL, Tileset.WALLV);
+        define(Tileset.WALLV, OPAQUE);
+
+        define(Tileset.PLAYER, PASSABLE);
+        virtualForm(Tileset.PLAYER, Tileset.PLAYERV);
+        define(Tileset.DEADPLAYER, PASSABLE);
+        // The player is shown the same in the digital world whether alive or dead.
+        virtualForm(Tileset.DEADPLAYER, Tileset.PLAYERV);
+        define(Tileset.BUDDY, PASSABLE);
+        virtualForm(Tileset.BUDDY, Tileset.BUDDYV);
+
+        // Traps can only be seen in the physical world, and energy only in the digital world.
+        define(Tileset.TRAP, TRAP | PASSABLE);
+        darkForm(Tileset.TRAP, Tileset.FLOORD);
+        virtualForm(Tileset.TRAP, Tileset.FLOORV);
+        define(Tileset.ENERGY, PICKUP | PASSABLE);
+        darkForm(Tileset.ENERGY, Tileset.FLOORD);
+        virtualForm(Tileset.ENERGY, Tileset.ENERGY);
+        lightForm(Tileset.ENERGY, Tileset.FLOOR);
+    }
+
+    private TileProperties() {
+    }
+
+    /**
+     * @param id a tile ID
+     * @return the flags of the tile
+     */
+    public static int flags(int id) {
+        int[] table = flags;
+        if (id >= table.length) {
+            grow();
+            table = flags;
+        }
+        return table[id];
+    }
+
+    /**
+     * @param id a tile ID
+     * @param flag one or more flags
+     * @return whether the tile has any of the given flags
+     */
+    public static boolean has(int id, int flag) {
+        return (flags(id) & flag) != 0;
+    }
+
+    /**
+     * @param id a tile ID
+     * @return the ID of the tile shown once the tile has been seen but is out of view, or NONE
+     */
+    public static int darkForm(int id) {
+        flags(id);
+        return darkForms[id];
+    }
+
+    /**
+     * @param id a tile ID
+     * @return the ID of the tile shown for the tile in the digital world, or NONE
+     */
+    public static int virtualForm(int id) {
+        flags(id);
+        return virtualForms[id];
+    }
+
+    /**
+     * @param id a tile ID
+     * @return the ID of the tile shown for the tile in the physical world, or NONE
+     */
+    public static int lightForm(int id) {
+        flags(id);
+        return lightForms[id];
+    }
+
+    private static void define(TETile tile, int tileFlags) {
+        int id = TilePalette.idOf(tile);
+        grow();
+        flags[id] = tileFlags;
+    }
+
+    private static void darkForm(TETile tile, TETile form) {
+        darkForms[TilePalette.idOf(tile)] = TilePalette.idOf(form);
+    }
+
+    private static void virtualForm(TETile tile, TETile form) {
+        virtualForms[TilePalette.idOf(tile)] = TilePalette.idOf(form);
+    }
+
+    private static void lightForm(TETile tile, TETile form) {
+        lightForms[TilePalette.idOf(tile)] = TilePalette.idOf(form);
+    }
+
+    /**
+     * Extend the tables to every tile in the palette, giving each new tile the properties of its
+     * character.
+     */
+    private static synchronized void grow() {
+        int old = flags.length;
+        int size = TilePalette.size();
+        if (size <= old) {
+            return;
+        }
+
+        int[] grownFlags = Arrays.copyOf(flags, size);
+        darkForms = grown(darkForms, size);
+        virtualForms = grown(virtualForms, size);
+        lightForms = grown(lightForms, size);
+        for (int id = old; id < size; id += 1) {
+            char character = TilePalette.tileOf(id).character();
+            if (character == '#') {
+                grownFlags[id] = OPAQUE;
+            } else if (character == ' ') {
+                grownFlags[id] = EMPTY | PASSABLE;
+            } else {
+                grownFlags[id] = PASSABLE;
+            }
+        }
+        flags = grownFlags;
+    }
+
+    private static int[] grown(int[] table, int size) {
+        int old = table.length;
+        int[] grown = Arrays.copyOf(table, size);
+        Arrays.fill(grown, old, size, NONE);
+        return grown;
+    }
+}